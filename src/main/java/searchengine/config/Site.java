@@ -8,4 +8,8 @@ import lombok.Setter;
 public class Site {
     private String url;
     private String name;
+    private Double requestsPerSecond;
+    private Integer maxConcurrency;
+    private Long bloomFilterCapacity;
+    private Integer maxPages;
 }
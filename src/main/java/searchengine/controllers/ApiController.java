@@ -25,8 +25,15 @@ public class ApiController {
     }
 
     @GetMapping("/startIndexing")
-    public ResponseEntity<ApiResponse> startIndexing() {
-        return indexingService.startIndexing();
+    public ResponseEntity<ApiResponse> startIndexing(
+            @RequestParam(name="incremental", required = false, defaultValue = "false") boolean incremental
+    ) {
+        return indexingService.startIndexing(incremental);
+    }
+
+    @GetMapping("/resumeIndexing")
+    public ResponseEntity<ApiResponse> resumeIndexing() {
+        return indexingService.resumeIndexing();
     }
 
     @GetMapping("/stopIndexing")
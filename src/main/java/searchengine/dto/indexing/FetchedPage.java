@@ -0,0 +1,16 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+import org.jsoup.nodes.Document;
+
+@Data
+public class FetchedPage {
+    private final int statusCode;
+    private final Document document;
+    private final String etag;
+    private final String lastModified;
+
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+}
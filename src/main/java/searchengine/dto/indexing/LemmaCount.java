@@ -0,0 +1,38 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+import java.util.Arrays;
+
+/**
+ * Occurrences of a lemma in the title and in the body of a page, with the first body positions
+ * as (word index, character offset) pairs into the body text.
+ */
+@Data
+public class LemmaCount {
+    private int titleCount;
+    private int bodyCount;
+    private int[] positions = new int[0];
+    private int positionCount;
+
+    public void increment(boolean isTitle) {
+        if (isTitle) {
+            titleCount++;
+        } else {
+            bodyCount++;
+        }
+    }
+
+    public void addPosition(int wordIndex, int wordOffset, int maxPositions) {
+        if (positionCount >= maxPositions
+                || positionCount > 0 && positions[2 * positionCount - 2] == wordIndex) {
+            return;
+        }
+        if (2 * positionCount == positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(4, positions.length * 2));
+        }
+        positions[2 * positionCount] = wordIndex;
+        positions[2 * positionCount + 1] = wordOffset;
+        positionCount++;
+    }
+}
@@ -0,0 +1,12 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+/**
+ * Rank of a lemma in a page and its encoded body positions, null when they are not known.
+ */
+@Data
+public class LemmaRank {
+    private final float rank;
+    private final byte[] positions;
+}
@@ -0,0 +1,28 @@
+package searchengine.dto.indexing;
+
+import java.util.Date;
+
+public interface PageSnapshot {
+
+    int getId();
+
+    String getPath();
+
+    int getCode();
+
+    String getContentHash();
+
+    String getEtag();
+
+    String getLastModified();
+
+    Long getSimhash();
+
+    int getVisitCount();
+
+    int getChangeCount();
+
+    long getObservedSeconds();
+
+    Date getLastVisited();
+}
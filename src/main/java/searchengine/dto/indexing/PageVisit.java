@@ -0,0 +1,15 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+public class PageVisit {
+    private final int pageId;
+    private final int visitCount;
+    private final int changeCount;
+    private final long observedSeconds;
+    private final Date lastVisited;
+    private final Date nextVisit;
+}
@@ -0,0 +1,12 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+import searchengine.model.PageEntity;
+
+@Data
+public class Posting {
+    private final PageEntity page;
+    private final String lemma;
+    private final float rank;
+    private final byte[] positions;
+}
@@ -0,0 +1,11 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class SitemapEntry {
+    private final String url;
+    private final Instant lastModified;
+}
@@ -0,0 +1,11 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+@Data
+public class StageStatistics {
+    private final String stage;
+    private final int threads;
+    private final long queueDepth;
+    private final long processed;
+}
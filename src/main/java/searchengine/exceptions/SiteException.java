@@ -5,4 +5,8 @@ public class SiteException extends RuntimeException {
     public SiteException(String message) {
         super(message);
     }
+
+    public SiteException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -32,4 +32,7 @@ public class IndexEntity {
     @NonNull
     @Column(name = "lemma_rank", nullable = false)
     private float lemmaRank;
+
+    @Column(name = "positions", columnDefinition = "blob")
+    private byte[] positions;
 }
@@ -11,7 +11,9 @@ import java.util.List;
 @NoArgsConstructor
 @RequiredArgsConstructor
 @Entity
-@Table(name = "Lemmas")
+@Table(name = "Lemmas",
+        uniqueConstraints = { @UniqueConstraint(columnNames = { "site_id", "lemma" }) }
+)
 public class LemmaEntity {
 
     @Id
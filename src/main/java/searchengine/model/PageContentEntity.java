@@ -0,0 +1,30 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "page_contents")
+public class PageContentEntity {
+
+    @Id
+    @Column(name = "page_id")
+    private int pageId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "page_id", referencedColumnName = "id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private PageEntity page;
+
+    @Column(columnDefinition = "MEDIUMBLOB", nullable = false)
+    private byte[] content;
+}
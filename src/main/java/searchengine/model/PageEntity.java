@@ -1,8 +1,10 @@
 package searchengine.model;
 
 import lombok.*;
+import searchengine.dto.indexing.PageSnapshot;
 
 import javax.persistence.*;
+import java.util.Date;
 import java.util.List;
 
 @Data
@@ -10,10 +12,13 @@ import java.util.List;
 @RequiredArgsConstructor
 @Entity
 @Table(name = "Pages",
-        indexes = @Index(name = "path_index", columnList = "path"),
+        indexes = {
+                @Index(name = "path_index", columnList = "path"),
+                @Index(name = "next_visit_index", columnList = "site_id, next_visit")
+        },
         uniqueConstraints = { @UniqueConstraint(columnNames = { "path", "site_id" }) }
 )
-public class PageEntity {
+public class PageEntity implements PageSnapshot {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -28,9 +33,42 @@ public class PageEntity {
     private int code;
 
     @NonNull
-    @Column(columnDefinition = "MEDIUMTEXT", nullable = false)
+    @Transient
     private String content;
 
+    @Column(name = "content_hash", columnDefinition = "char(64)")
+    private String contentHash;
+
+    @Column(name = "etag")
+    private String etag;
+
+    @Column(name = "last_modified", length = 64)
+    private String lastModified;
+
+    @Column(name = "visit_count", nullable = false, columnDefinition = "int default 0")
+    private int visitCount;
+
+    @Column(name = "change_count", nullable = false, columnDefinition = "int default 0")
+    private int changeCount;
+
+    @Column(name = "observed_seconds", nullable = false, columnDefinition = "bigint default 0")
+    private long observedSeconds;
+
+    @Column(name = "last_visited")
+    private Date lastVisited;
+
+    @Column(name = "next_visit")
+    private Date nextVisit;
+
+    @Column(name = "simhash")
+    private Long simhash;
+
+    @Column(name = "duplicate_of")
+    private Integer duplicateOf;
+
+    @Transient
+    private PageEntity canonicalPage;
+
     @NonNull
     @ManyToOne
     @JoinColumn(name = "site_id", referencedColumnName = "id", nullable = false)
@@ -0,0 +1,114 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.exceptions.SiteException;
+import searchengine.model.PageEntity;
+import searchengine.util.PropertiesHolder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+@Repository
+@RequiredArgsConstructor
+public class DeflatePageContentStore implements PageContentStore {
+
+    private static final int IN_CLAUSE_SIZE = 1000;
+    private static final int BUFFER_SIZE = 8192;
+
+    // Preset deflate dictionary: markup repeated by almost every page, the most frequent fragments go last
+    private static final byte[] HTML_DICTIONARY = String.join("",
+            "<!DOCTYPE html>", "<html lang=\"ru\">", "<meta charset=\"utf-8\">",
+            "<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">",
+            "<meta name=\"description\" content=\"", "<meta property=\"og:", "<link rel=\"stylesheet\" href=\"",
+            "<script type=\"text/javascript\" src=\"", "</script>", "<noscript>", "</noscript>", "</style>",
+            "</head>", "<body>", "<header>", "</header>", "<footer>", "</footer>", "<nav>", "</nav>",
+            "<form action=\"", "<input type=\"hidden\" name=\"", "<button type=\"", "<option value=\"",
+            "<table>", "<tbody>", "</table>", "<tr>", "</tr>", "<td>", "</td>", "<h1>", "</h1>", "<h2>", "</h2>",
+            "<h3>", "</h3>", "<p>", "</p>", "<br>", "<strong>", "</strong>", "<img src=\"", "\" alt=\"",
+            "<ul>", "</ul>", "<li>", "</li>", "<span class=\"", "</span>", "<a class=\"", "<a href=\"https://",
+            "</a>", "<div id=\"", "<div class=\"", "</div>\n", "</body>", "</html>"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final PropertiesHolder properties;
+
+    @Override
+    public void save(Collection<PageEntity> pages) {
+        List<Object[]> batchArgs = pages.stream()
+                .map(page -> new Object[]{page.getId(), compress(page.getContent())})
+                .toList();
+        jdbcTemplate.batchUpdate("INSERT INTO page_contents (page_id, content) VALUES (?, ?) " +
+                "ON DUPLICATE KEY UPDATE content = VALUES(content)", batchArgs);
+    }
+
+    @Override
+    public String load(int pageId) {
+        return loadAll(List.of(pageId)).get(pageId);
+    }
+
+    @Override
+    public Map<Integer, String> loadAll(Collection<Integer> pageIds) {
+        Map<Integer, String> contentMap = new HashMap<>();
+        List<Integer> pageIdList = new ArrayList<>(pageIds);
+        for (int i = 0; i < pageIdList.size(); i += IN_CLAUSE_SIZE) {
+            List<Integer> pageIdsChunk = pageIdList.subList(i, Math.min(i + IN_CLAUSE_SIZE, pageIdList.size()));
+            namedParameterJdbcTemplate.query(
+                    "SELECT page_id, content FROM page_contents WHERE page_id IN (:pageIds)",
+                    new MapSqlParameterSource("pageIds", pageIdsChunk),
+                    resultSet -> {
+                        contentMap.put(resultSet.getInt("page_id"), decompress(resultSet.getBytes("content")));
+                    });
+        }
+        return contentMap;
+    }
+
+    private byte[] compress(String content) {
+        byte[] input = content.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(properties.getContentCompressionLevel());
+        try {
+            deflater.setDictionary(HTML_DICTIONARY);
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private String decompress(byte[] compressed) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && inflater.needsDictionary()) {
+                    inflater.setDictionary(HTML_DICTIONARY);
+                } else if (length == 0 && !inflater.finished() && inflater.needsInput()) {
+                    throw new SiteException("Page content is truncated");
+                }
+                output.write(buffer, 0, length);
+            }
+            return output.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new SiteException("Page content is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.dto.indexing.PageVisit;
+import searchengine.dto.indexing.Posting;
+import searchengine.model.LemmaEntity;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.*;
+
+@Repository
+@RequiredArgsConstructor
+public class IndexBatchRepository {
+
+    private static final int IN_CLAUSE_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public void insertPages(List<PageEntity> pages) {
+        if (pages.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO pages (path, code, content_hash, etag, last_modified, visit_count, change_count, " +
+                            "observed_seconds, last_visited, next_visit, simhash, duplicate_of, site_id) " +
+                            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+                for (PageEntity page : pages) {
+                    statement.setString(1, page.getPath());
+                    setPageMetadata(statement, page, 2);
+                    statement.setInt(13, page.getSite().getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    for (PageEntity page : pages) {
+                        if (!generatedKeys.next()) {
+                            throw new SQLException("Not all page ids were returned by the batch insert");
+                        }
+                        page.setId(generatedKeys.getInt(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    public void updatePages(List<PageEntity> pages) {
+        if (pages.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE pages SET code = ?, content_hash = ?, etag = ?, last_modified = ?, visit_count = ?, " +
+                            "change_count = ?, observed_seconds = ?, last_visited = ?, next_visit = ?, simhash = ?, " +
+                            "duplicate_of = ? WHERE id = ?")) {
+                for (PageEntity page : pages) {
+                    setPageMetadata(statement, page, 1);
+                    statement.setInt(12, page.getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    public void updatePageVisits(Collection<PageVisit> pageVisits) {
+        List<Object[]> batchArgs = pageVisits.stream()
+                .map(visit -> new Object[]{visit.getVisitCount(), visit.getChangeCount(), visit.getObservedSeconds(),
+                        visit.getLastVisited(), visit.getNextVisit(), visit.getPageId()})
+                .toList();
+        jdbcTemplate.batchUpdate("UPDATE pages SET visit_count = ?, change_count = ?, observed_seconds = ?, " +
+                "last_visited = ?, next_visit = ? WHERE id = ?", batchArgs);
+    }
+
+    public void updateDuplicateOf(Collection<PageEntity> duplicates) {
+        List<Object[]> batchArgs = duplicates.stream()
+                .map(page -> new Object[]{page.getDuplicateOf(), page.getId()})
+                .toList();
+        jdbcTemplate.batchUpdate("UPDATE pages SET duplicate_of = ? WHERE id = ?", batchArgs);
+    }
+
+    public List<Integer> findDuplicateIds(Collection<Integer> canonicalPageIds) {
+        List<Integer> duplicateIds = new ArrayList<>();
+        for (List<Integer> pageIdsChunk : chunks(canonicalPageIds)) {
+            duplicateIds.addAll(namedParameterJdbcTemplate.queryForList(
+                    "SELECT id FROM pages WHERE duplicate_of IN (:pageIds)",
+                    new MapSqlParameterSource("pageIds", pageIdsChunk), Integer.class));
+        }
+        return duplicateIds;
+    }
+
+    /**
+     * Turns duplicates into pages to be indexed in full. The cleared content hash makes the next visit
+     * index them even when their text is unchanged.
+     */
+    public void releaseDuplicates(Collection<Integer> pageIds) {
+        for (List<Integer> pageIdsChunk : chunks(pageIds)) {
+            namedParameterJdbcTemplate.update(
+                    "UPDATE pages SET duplicate_of = NULL, content_hash = NULL WHERE id IN (:pageIds)",
+                    new MapSqlParameterSource("pageIds", pageIdsChunk));
+        }
+    }
+
+    /**
+     * Fingerprints of the pages of a site that are indexed in full, keyed by page id.
+     */
+    public Map<Integer, Long> findCanonicalFingerprints(int siteId) {
+        Map<Integer, Long> fingerprints = new HashMap<>();
+        jdbcTemplate.query("SELECT id, simhash FROM pages " +
+                        "WHERE site_id = ? AND simhash IS NOT NULL AND duplicate_of IS NULL",
+                resultSet -> {
+                    fingerprints.put(resultSet.getInt("id"), resultSet.getLong("simhash"));
+                }, siteId);
+        return fingerprints;
+    }
+
+    public void updateSiteStatusTime(int siteId, Date statusTime) {
+        jdbcTemplate.update("UPDATE sites SET status_time = ? WHERE id = ?", statusTime, siteId);
+    }
+
+    /**
+     * Several writers of one site may add the same lemma at once, the unique key on (site_id, lemma)
+     * keeps a single row, which every writer then reads back with findLemmaIds.
+     */
+    public void insertLemmas(int siteId, Collection<String> lemmas) {
+        List<Object[]> batchArgs = lemmas.stream().map(lemma -> new Object[]{lemma, siteId}).toList();
+        jdbcTemplate.batchUpdate("INSERT INTO lemmas (lemma, frequency, site_id) VALUES (?, 0, ?) " +
+                "ON DUPLICATE KEY UPDATE id = id", batchArgs);
+    }
+
+    public Map<String, Integer> findLemmaIds(int siteId, Collection<String> lemmas) {
+        Map<String, Integer> lemmaIdMap = new HashMap<>();
+        for (List<String> lemmasChunk : chunks(lemmas)) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource()
+                    .addValue("siteId", siteId)
+                    .addValue("lemmas", lemmasChunk);
+            namedParameterJdbcTemplate.query(
+                    "SELECT id, lemma FROM lemmas WHERE site_id = :siteId AND lemma IN (:lemmas)",
+                    parameters,
+                    resultSet -> {
+                        lemmaIdMap.put(resultSet.getString("lemma"), resultSet.getInt("id"));
+                    });
+        }
+        return lemmaIdMap;
+    }
+
+    public void updateLemmaFrequencies(Map<Integer, Integer> frequencyDeltas) {
+        List<Object[]> batchArgs = frequencyDeltas.entrySet().stream()
+                .filter(entry -> entry.getValue() != 0)
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList();
+        jdbcTemplate.batchUpdate("UPDATE lemmas SET frequency = frequency + ? WHERE id = ?", batchArgs);
+    }
+
+    public void insertPostings(List<Posting> postings, Map<String, Integer> lemmaIds) {
+        List<Object[]> batchArgs = postings.stream()
+                .map(posting -> new Object[]{posting.getPage().getId(), lemmaIds.get(posting.getLemma()),
+                        posting.getRank(), posting.getPositions()})
+                .toList();
+        jdbcTemplate.batchUpdate("INSERT INTO search_index (page_id, lemma_id, lemma_rank, positions) " +
+                "VALUES (?, ?, ?, ?)", batchArgs);
+    }
+
+    /**
+     * Encoded body positions of the lemmas in the pages, grouped by page id. Postings without positions are left out.
+     */
+    public Map<Integer, List<byte[]>> findPositions(Collection<Integer> pageIds, Collection<Integer> lemmaIds) {
+        Map<Integer, List<byte[]>> positionsByPageId = new HashMap<>();
+        for (List<Integer> pageIdsChunk : chunks(pageIds)) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource()
+                    .addValue("pageIds", pageIdsChunk)
+                    .addValue("lemmaIds", lemmaIds);
+            namedParameterJdbcTemplate.query(
+                    "SELECT page_id, positions FROM search_index " +
+                            "WHERE page_id IN (:pageIds) AND lemma_id IN (:lemmaIds) AND positions IS NOT NULL",
+                    parameters,
+                    resultSet -> {
+                        positionsByPageId.computeIfAbsent(resultSet.getInt("page_id"), id -> new ArrayList<>())
+                                .add(resultSet.getBytes("positions"));
+                    });
+        }
+        return positionsByPageId;
+    }
+
+    public List<LemmaEntity> findLemmas(Collection<String> lemmas, Map<Integer, SiteEntity> sitesById) {
+        List<LemmaEntity> lemmaEntities = new ArrayList<>();
+        if (lemmas.isEmpty() || sitesById.isEmpty()) {
+            return lemmaEntities;
+        }
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("lemmas", lemmas)
+                .addValue("siteIds", sitesById.keySet());
+        namedParameterJdbcTemplate.query(
+                "SELECT id, lemma, frequency, site_id FROM lemmas " +
+                        "WHERE lemma IN (:lemmas) AND site_id IN (:siteIds) AND frequency > 0",
+                parameters,
+                resultSet -> {
+                    LemmaEntity lemmaEntity = new LemmaEntity(resultSet.getString("lemma"),
+                            resultSet.getInt("frequency"), sitesById.get(resultSet.getInt("site_id")));
+                    lemmaEntity.setId(resultSet.getInt("id"));
+                    lemmaEntities.add(lemmaEntity);
+                });
+        return lemmaEntities;
+    }
+
+    public int countCanonicalPages(int siteId) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pages WHERE site_id = ? AND duplicate_of IS NULL", Integer.class, siteId);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Intersects and scores in one statement: a page matches when it has a posting for as many of the lemma ids
+     * as there are distinct query lemmas, and its relevance is the sum of those ranks.
+     * A site has at most one id per lemma, so pages of a site lacking one of the lemmas fall short of the count.
+     */
+    public Map<Integer, Float> findPagesWithAllLemmas(Collection<Integer> lemmaIds, int lemmaCount) {
+        Map<Integer, Float> relevanceByPageId = new HashMap<>();
+        if (lemmaIds.isEmpty()) {
+            return relevanceByPageId;
+        }
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("lemmaIds", lemmaIds)
+                .addValue("lemmaCount", lemmaCount);
+        namedParameterJdbcTemplate.query(
+                "SELECT page_id, SUM(lemma_rank) AS relevance FROM search_index WHERE lemma_id IN (:lemmaIds) " +
+                        "GROUP BY page_id HAVING COUNT(*) = :lemmaCount",
+                parameters,
+                resultSet -> {
+                    relevanceByPageId.put(resultSet.getInt("page_id"), resultSet.getFloat("relevance"));
+                });
+        return relevanceByPageId;
+    }
+
+    /**
+     * Streams every posting with its lemma, ordered by lemma id and page id, without holding the table in memory.
+     */
+    public void streamPostings(RowCallbackHandler handler) {
+        stream("SELECT l.site_id AS site_id, l.lemma AS lemma, i.lemma_id AS lemma_id, i.page_id AS page_id, " +
+                "i.lemma_rank AS lemma_rank FROM search_index i JOIN lemmas l ON l.id = i.lemma_id " +
+                "ORDER BY i.lemma_id, i.page_id", handler);
+    }
+
+    /**
+     * Streams the id and site id of every page indexed in full.
+     */
+    public void streamCanonicalPageIds(RowCallbackHandler handler) {
+        stream("SELECT id, site_id FROM pages WHERE duplicate_of IS NULL", handler);
+    }
+
+    public Map<String, Integer> countLemmasByPageIds(Collection<Integer> pageIds) {
+        Map<String, Integer> lemmaCountMap = new HashMap<>();
+        for (List<Integer> pageIdsChunk : chunks(pageIds)) {
+            namedParameterJdbcTemplate.query(
+                    "SELECT l.lemma AS lemma, COUNT(*) AS count FROM search_index i " +
+                            "JOIN lemmas l ON l.id = i.lemma_id WHERE i.page_id IN (:pageIds) GROUP BY l.lemma",
+                    new MapSqlParameterSource("pageIds", pageIdsChunk),
+                    resultSet -> {
+                        lemmaCountMap.merge(resultSet.getString("lemma"), resultSet.getInt("count"), Integer::sum);
+                    });
+        }
+        return lemmaCountMap;
+    }
+
+    public void deletePostingsByPageIds(Collection<Integer> pageIds) {
+        for (List<Integer> pageIdsChunk : chunks(pageIds)) {
+            namedParameterJdbcTemplate.update("DELETE FROM search_index WHERE page_id IN (:pageIds)",
+                    new MapSqlParameterSource("pageIds", pageIdsChunk));
+        }
+    }
+
+    /**
+     * MySQL Connector/J only streams a result set that is forward-only, read-only and fetched row by row.
+     */
+    private void stream(String sql, RowCallbackHandler handler) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        handler.processRow(resultSet);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private void setPageMetadata(PreparedStatement statement, PageEntity page, int firstIndex) throws SQLException {
+        statement.setInt(firstIndex, page.getCode());
+        statement.setString(firstIndex + 1, page.getContentHash());
+        statement.setString(firstIndex + 2, page.getEtag());
+        statement.setString(firstIndex + 3, page.getLastModified());
+        statement.setInt(firstIndex + 4, page.getVisitCount());
+        statement.setInt(firstIndex + 5, page.getChangeCount());
+        statement.setLong(firstIndex + 6, page.getObservedSeconds());
+        statement.setTimestamp(firstIndex + 7, toTimestamp(page.getLastVisited()));
+        statement.setTimestamp(firstIndex + 8, toTimestamp(page.getNextVisit()));
+        statement.setObject(firstIndex + 9, page.getSimhash(), Types.BIGINT);
+        statement.setObject(firstIndex + 10, page.getDuplicateOf(), Types.INTEGER);
+    }
+
+    private Timestamp toTimestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+
+    private <T> List<List<T>> chunks(Collection<T> values) {
+        List<T> valueList = new ArrayList<>(values);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < valueList.size(); i += IN_CLAUSE_SIZE) {
+            chunks.add(valueList.subList(i, Math.min(i + IN_CLAUSE_SIZE, valueList.size())));
+        }
+        return chunks;
+    }
+}
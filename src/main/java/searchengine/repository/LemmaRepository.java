@@ -8,23 +8,10 @@ import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.LemmaEntity;
 import searchengine.model.SiteEntity;
 
-import java.util.Collection;
-import java.util.List;
-
 public interface LemmaRepository extends JpaRepository<LemmaEntity, Long> {
 
     int countLemmaEntitiesBySite(SiteEntity siteEntity);
 
-    List<LemmaEntity> findLemmaEntitiesByLemmaIn(Collection<String> lemmas);
-
-    List<LemmaEntity> findLemmaEntitiesByLemmaInAndSite(Collection<String> lemmas, SiteEntity siteEntity);
-
-    @Modifying
-    @Transactional
-    @Query(value = "UPDATE lemmas SET frequency = frequency - 1 WHERE site_id = :siteId AND lemma IN :lemmas",
-            nativeQuery = true)
-    void reduceByOneLemmaFrequencies(@Param("siteId") int siteId, @Param("lemmas") Collection<String> lemmas);
-
     @Modifying
     @Transactional
     @Query(value = "DELETE FROM lemmas WHERE site_id = :siteId AND frequency < 1", nativeQuery = true)
@@ -0,0 +1,67 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.model.PageEntity;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Databases created before page html moved to page_contents still have the NOT NULL pages.content column,
+ * which ddl-auto=update never drops and which makes every page insert fail. On startup the html still held
+ * there is compressed into page_contents and the column is dropped.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Log4j2
+public class PageContentMigration {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PageContentStore pageContentStore;
+
+    @PostConstruct
+    public void migrate() {
+        if (!hasLegacyContentColumn()) {
+            return;
+        }
+        long migrationStart = System.currentTimeMillis();
+        int movedCount = 0;
+        List<PageEntity> pages;
+        do {
+            pages = findPagesToMove();
+            pageContentStore.save(pages);
+            movedCount += pages.size();
+        } while (pages.size() == BATCH_SIZE);
+        jdbcTemplate.execute("ALTER TABLE pages DROP COLUMN content");
+        log.info("Moved the html of {} pages to page_contents and dropped pages.content in {} ms",
+                movedCount, System.currentTimeMillis() - migrationStart);
+    }
+
+    private boolean hasLegacyContentColumn() {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND LOWER(table_name) = 'pages' AND column_name = 'content'",
+                Integer.class);
+        return count != null && count > 0;
+    }
+
+    private List<PageEntity> findPagesToMove() {
+        List<PageEntity> pages = new ArrayList<>();
+        jdbcTemplate.query("SELECT p.id, p.content FROM pages p LEFT JOIN page_contents c ON c.page_id = p.id " +
+                        "WHERE c.page_id IS NULL AND p.content IS NOT NULL LIMIT " + BATCH_SIZE,
+                resultSet -> {
+                    PageEntity page = new PageEntity();
+                    page.setId(resultSet.getInt("id"));
+                    page.setContent(resultSet.getString("content"));
+                    pages.add(page);
+                });
+        return pages;
+    }
+}
@@ -0,0 +1,21 @@
+package searchengine.repository;
+
+import searchengine.model.PageEntity;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Keeps page html apart from the pages table, which only holds page metadata.
+ */
+public interface PageContentStore {
+
+    /**
+     * Stores the content of already saved pages, replacing any previous content.
+     */
+    void save(Collection<PageEntity> pages);
+
+    String load(int pageId);
+
+    Map<Integer, String> loadAll(Collection<Integer> pageIds);
+}
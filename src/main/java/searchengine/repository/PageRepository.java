@@ -1,17 +1,25 @@
 package searchengine.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import searchengine.dto.indexing.PageSnapshot;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
 
+import java.util.Date;
+import java.util.List;
+
 public interface PageRepository extends JpaRepository<PageEntity, Integer> {
 
     PageEntity findPageEntityByPathAndSite(String path, SiteEntity siteEntity);
 
     int countPageEntitiesBySite(SiteEntity siteEntity);
 
-    @Query(value = "SELECT COUNT(*) * :limit / 100 FROM Pages WHERE site_id = :siteId", nativeQuery = true)
-    float getPageFrequencyOccurrence(@Param("limit") int limit, @Param("siteId") int siteId);
+    List<PageSnapshot> findPageSnapshotsBySite(SiteEntity siteEntity);
+
+    @Query("SELECT p FROM PageEntity p WHERE p.site.id = :siteId AND (p.nextVisit IS NULL OR p.nextVisit <= :now) " +
+            "ORDER BY p.nextVisit")
+    List<PageSnapshot> findPagesDueForVisit(@Param("siteId") int siteId, @Param("now") Date now, Pageable pageable);
 }
@@ -0,0 +1,198 @@
+package searchengine.services;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import searchengine.util.PropertiesHolder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Per-site queue of the urls waiting to be crawled. The url with the lowest score is handed out first:
+ * the score grows with link depth and for low-value url patterns, and drops for pages a sitemap reports as fresh.
+ * Workers are started on demand as far as the scheduler allows, each of them polls until the queue runs dry.
+ */
+@Log4j2
+public class CrawlFrontier {
+
+    private final PriorityBlockingQueue<Entry> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // urls queued or being crawled, plus one until seeding is finished
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private final AtomicInteger handedOut = new AtomicInteger();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final int siteId;
+    private final Integer maxPages;
+    private final CrawlScheduler scheduler;
+    private final Consumer<CrawlFrontier> workerStarter;
+    private final double depthWeight;
+    private final Pattern lowValuePattern;
+    private final double lowValuePenalty;
+    private final double freshnessWeight;
+    private final long freshnessWindowMillis;
+    @Getter
+    private volatile boolean isTruncated = false;
+
+    public CrawlFrontier(int siteId, Integer maxPages, CrawlScheduler scheduler, PropertiesHolder properties,
+                         Consumer<CrawlFrontier> workerStarter) {
+        this.siteId = siteId;
+        this.maxPages = maxPages;
+        this.scheduler = scheduler;
+        this.workerStarter = workerStarter;
+        this.depthWeight = properties.getPriorityDepthWeight();
+        this.lowValuePattern = Pattern.compile(properties.getPriorityLowValuePattern());
+        this.lowValuePenalty = properties.getPriorityLowValuePenalty();
+        this.freshnessWeight = properties.getPriorityFreshnessWeight();
+        this.freshnessWindowMillis = Duration.ofDays(properties.getPriorityFreshnessWindowDays()).toMillis();
+    }
+
+    /**
+     * Queues a url found at the given link depth, lastModified is the sitemap's lastmod or null.
+     */
+    public void offer(String url, int depth, Instant lastModified) {
+        if (completion.isDone() || isTruncated) {
+            return;
+        }
+        pending.incrementAndGet();
+        queue.add(new Entry(url, depth, score(url, depth, lastModified), sequence.getAndIncrement()));
+        tryStartWorker();
+    }
+
+    public void finishSeeding() {
+        complete();
+    }
+
+    /**
+     * Returns the next url to crawl, or null when the queue is empty, the frontier is closed
+     * or the page budget is spent. Every returned entry must be passed to complete().
+     */
+    public Entry poll() {
+        if (completion.isDone() || scheduler.shouldYield(siteId)) {
+            return null;
+        }
+        Entry entry = queue.poll();
+        if (entry != null && maxPages != null && handedOut.incrementAndGet() > maxPages) {
+            truncate();
+            complete();
+            return null;
+        }
+        return entry;
+    }
+
+    public void complete() {
+        if (pending.decrementAndGet() == 0) {
+            completion.complete(null);
+        }
+    }
+
+    public void workerStopped() {
+        scheduler.releaseWorker(siteId);
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    public boolean hasQueuedUrls() {
+        return !queue.isEmpty() && !completion.isDone();
+    }
+
+    /**
+     * Called by the scheduler when a worker slot is freed while this site waits for one.
+     */
+    public void requestWorker() {
+        if (hasQueuedUrls()) {
+            tryStartWorker();
+        }
+    }
+
+    public void stop() {
+        queue.clear();
+        completion.complete(null);
+    }
+
+    public void fail(Throwable throwable) {
+        queue.clear();
+        completion.completeExceptionally(throwable);
+    }
+
+    /**
+     * Waits for the crawl to end, returns false if it is still running after the timeout.
+     */
+    public boolean await(long timeoutMillis) throws Exception {
+        try {
+            completion.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void truncate() {
+        isTruncated = true;
+        int dropped = 0;
+        while (queue.poll() != null) {
+            dropped++;
+        }
+        log.info("Page budget of {} reached, {} queued urls dropped", maxPages, dropped);
+        if (dropped > 0 && pending.addAndGet(-dropped) == 0) {
+            completion.complete(null);
+        }
+    }
+
+    private void tryStartWorker() {
+        if (!scheduler.tryAcquireWorker(siteId)) {
+            return;
+        }
+        try {
+            workerStarter.accept(this);
+        } catch (RejectedExecutionException e) {
+            fail(new CancellationException("Crawl pool is shut down"));
+            scheduler.releaseWorker(siteId);
+        }
+    }
+
+    private double score(String url, int depth, Instant lastModified) {
+        double score = depth * depthWeight;
+        if (lowValuePattern.matcher(url).find()) {
+            score += lowValuePenalty;
+        }
+        if (lastModified != null) {
+            long ageMillis = Math.max(0, System.currentTimeMillis() - lastModified.toEpochMilli());
+            score -= freshnessWeight * Math.max(0, 1 - (double) ageMillis / freshnessWindowMillis);
+        }
+        return score;
+    }
+
+    @Getter
+    public static final class Entry implements Comparable<Entry> {
+
+        private final String url;
+        private final int depth;
+        private final double score;
+        private final long sequence;
+
+        private Entry(String url, int depth, double score, long sequence) {
+            this.url = url;
+            this.depth = depth;
+            this.score = score;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package searchengine.services;
+
+import org.jsoup.UnsupportedMimeTypeException;
+import org.springframework.stereotype.Component;
+import searchengine.util.PropertiesHolder;
+
+import javax.annotation.PreDestroy;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The single HTTP client of the crawler. Connections are pooled and kept alive between requests to a host,
+ * HTTP/2 is used where the server offers it, and bodies are requested compressed.
+ * A body is handed out as a stream that is decompressed on the fly and cut at the size limit.
+ * The request timeout only covers the wait for the headers, so a response is also closed once the total timeout
+ * since the request was sent runs out, which aborts the exchange and makes a pending read fail as a timeout.
+ */
+@Component
+public class CrawlHttpClient {
+
+    private static final Pattern PARSEABLE_TYPE = Pattern.compile("(?i)^(text/.*|application/(\\w+\\+)?xml.*)");
+
+    private final PropertiesHolder properties;
+    private final HttpClient httpClient;
+    private final ScheduledThreadPoolExecutor deadlineTimer;
+
+    public CrawlHttpClient(PropertiesHolder properties) {
+        this.properties = properties;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(properties.getConnectTimeoutMillis()))
+                .build();
+        this.deadlineTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "http-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deadlineTimer.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deadlineTimer.shutdownNow();
+    }
+
+    /**
+     * Sends a GET request. When parseableOnly is set, a successful response that is neither text nor xml
+     * is closed before its body is read.
+     */
+    public Response get(String url, Map<String, String> headers, boolean parseableOnly, long maxBodyBytes)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(properties.getConnectTimeoutMillis()))
+                .header("User-Agent", properties.getUseragent())
+                .header("Referer", properties.getReferrer())
+                .header("Accept-Encoding", "gzip, deflate")
+                .GET();
+        headers.forEach(requestBuilder::header);
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getTotalTimeoutMillis());
+        HttpResponse<InputStream> httpResponse =
+                httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        Response response = new Response(httpResponse, maxBodyBytes);
+        response.expiry = deadlineTimer.schedule(response::expire,
+                Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        if (parseableOnly && response.getStatusCode() == 200) {
+            String contentType = response.getHeader("Content-Type");
+            if (contentType != null && !PARSEABLE_TYPE.matcher(contentType).matches()) {
+                response.close();
+                throw new UnsupportedMimeTypeException("Unhandled content type", contentType, url);
+            }
+        }
+        return response;
+    }
+
+    public static final class Response implements AutoCloseable {
+
+        private final HttpResponse<InputStream> httpResponse;
+        private final long maxBodyBytes;
+        private volatile ScheduledFuture<?> expiry;
+        private volatile boolean isExpired = false;
+
+        private Response(HttpResponse<InputStream> httpResponse, long maxBodyBytes) {
+            this.httpResponse = httpResponse;
+            this.maxBodyBytes = maxBodyBytes;
+        }
+
+        public int getStatusCode() {
+            return httpResponse.statusCode();
+        }
+
+        public String getHeader(String name) {
+            return httpResponse.headers().firstValue(name).orElse(null);
+        }
+
+        /**
+         * Url of the page after redirects, used as the base of relative links.
+         */
+        public String getUrl() {
+            return httpResponse.uri().toString();
+        }
+
+        public String getCharset() {
+            Optional<String> contentType = httpResponse.headers().firstValue("Content-Type");
+            if (contentType.isEmpty()) {
+                return null;
+            }
+            for (String parameter : contentType.get().split(";")) {
+                String trimmed = parameter.trim();
+                if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                    return trimmed.substring(8).replace("\"", "").trim();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Decoded body, ending quietly at the size limit like Jsoup's maxBodySize did.
+         */
+        public InputStream getBody() throws IOException {
+            InputStream body = new ExpiringInputStream(httpResponse.body());
+            String contentEncoding = getHeader("Content-Encoding");
+            if ("gzip".equalsIgnoreCase(contentEncoding)) {
+                body = new GZIPInputStream(body);
+            } else if ("deflate".equalsIgnoreCase(contentEncoding)) {
+                body = new InflaterInputStream(body);
+            }
+            return new LimitedInputStream(body, maxBodyBytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (expiry != null) {
+                expiry.cancel(false);
+            }
+            httpResponse.body().close();
+        }
+
+        private void expire() {
+            isExpired = true;
+            try {
+                httpResponse.body().close();
+            } catch (IOException ignored) {
+                // the exchange is being torn down anyway
+            }
+        }
+
+        /**
+         * Reports the failure of a read cut short by the deadline as a timeout.
+         */
+        private final class ExpiringInputStream extends FilterInputStream {
+
+            private ExpiringInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                try {
+                    return super.read();
+                } catch (IOException e) {
+                    throw isExpired ? newTimeoutException() : e;
+                }
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                try {
+                    return super.read(buffer, offset, length);
+                } catch (IOException e) {
+                    throw isExpired ? newTimeoutException() : e;
+                }
+            }
+
+            private HttpTimeoutException newTimeoutException() {
+                return new HttpTimeoutException("Response not read within the total timeout: " + getUrl());
+            }
+        }
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int value = super.read();
+            if (value >= 0) {
+                remaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
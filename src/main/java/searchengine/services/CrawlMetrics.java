@@ -0,0 +1,98 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crawler meters, exposed with the other Micrometer metrics on /actuator/prometheus.
+ * Per-site rates come from the counters, e.g. rate(crawler_pages_fetched_total[1m]).
+ */
+@Component
+public class CrawlMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Integer, Gauge> frontierGaugeMap = new ConcurrentHashMap<>();
+
+    public CrawlMetrics(MeterRegistry meterRegistry, CrawlPipeline crawlPipeline) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("crawler.fetch.pool.queued", crawlPipeline, CrawlPipeline::getFetchQueueDepth)
+                .description("Crawl workers waiting for a fetch pool thread")
+                .register(meterRegistry);
+        Gauge.builder("crawler.fetch.pool.active", crawlPipeline, CrawlPipeline::getFetchActiveThreads)
+                .description("Fetch pool threads running a crawl worker")
+                .register(meterRegistry);
+        for (CrawlPipeline.Stage stage : CrawlPipeline.Stage.values()) {
+            Gauge.builder("crawler.pipeline.queued", crawlPipeline, pipeline -> pipeline.getQueueDepth(stage))
+                    .description("Tasks waiting in a crawl pipeline stage")
+                    .tag("stage", stage.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    public void recordPageFetched(String site) {
+        Counter.builder("crawler.pages.fetched")
+                .tag("site", site)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Status is the HTTP code, or "timeout" and "error" for requests that got no response.
+     */
+    public void recordFetch(String host, String status, long latencyNanos) {
+        Timer.builder("crawler.fetch.latency")
+                .tag("host", host)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(latencyNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("crawler.http.responses")
+                .tag("host", host)
+                .tag("status", status)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordLemmatization(long durationNanos) {
+        Timer.builder("crawler.lemmatize.page")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordIndexFlush(int siteId, int pages, long durationMillis) {
+        Timer.builder("crawler.index.flush")
+                .tag("site_id", String.valueOf(siteId))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(durationMillis, TimeUnit.MILLISECONDS);
+        Counter.builder("crawler.index.pages.written")
+                .tag("site_id", String.valueOf(siteId))
+                .register(meterRegistry)
+                .increment(pages);
+    }
+
+    public void registerFrontier(int siteId, String site, CrawlFrontier frontier) {
+        Gauge gauge = Gauge.builder("crawler.frontier.size", frontier, CrawlFrontier::getQueuedCount)
+                .description("Urls waiting in the crawl frontier")
+                .tag("site", site)
+                .register(meterRegistry);
+        Gauge previousGauge = frontierGaugeMap.put(siteId, gauge);
+        if (previousGauge != null && previousGauge != gauge) {
+            meterRegistry.remove(previousGauge);
+        }
+    }
+
+    public void removeFrontier(int siteId) {
+        Gauge gauge = frontierGaugeMap.remove(siteId);
+        if (gauge != null) {
+            meterRegistry.remove(gauge);
+        }
+    }
+}
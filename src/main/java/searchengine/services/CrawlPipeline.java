@@ -0,0 +1,239 @@
+package searchengine.services;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import searchengine.dto.indexing.StageStatistics;
+import searchengine.exceptions.SiteException;
+import searchengine.util.PropertiesHolder;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+@Component
+@Log4j2
+public class CrawlPipeline {
+
+    public enum Stage {
+        EXTRACT,
+        LEMMATIZE,
+        PERSIST
+    }
+
+    @Getter
+    private final int fetchThreads;
+    private final Map<Stage, StageExecutor> stageExecutorMap = new EnumMap<>(Stage.class);
+    private final ConcurrentMap<Integer, SiteTracker> siteTrackerMap = new ConcurrentHashMap<>();
+    private final LongAdder fetchedPages = new LongAdder();
+    private volatile ForkJoinPool fetchPool;
+
+    public CrawlPipeline(PropertiesHolder properties) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = properties.getPipelineQueueCapacity();
+        fetchThreads = orDefault(properties.getFetchThreads(), cores);
+        stageExecutorMap.put(Stage.EXTRACT,
+                new StageExecutor(Stage.EXTRACT, orDefault(properties.getExtractThreads(), cores), queueCapacity));
+        stageExecutorMap.put(Stage.LEMMATIZE,
+                new StageExecutor(Stage.LEMMATIZE, orDefault(properties.getLemmatizeThreads(), cores), queueCapacity));
+        stageExecutorMap.put(Stage.PERSIST,
+                new StageExecutor(Stage.PERSIST, orDefault(properties.getPersistThreads(), 1), queueCapacity));
+    }
+
+    public ForkJoinPool newFetchPool() {
+        fetchPool = new ForkJoinPool(fetchThreads);
+        return fetchPool;
+    }
+
+    public void recordFetch() {
+        fetchedPages.increment();
+    }
+
+    public void startSite(int siteId) {
+        siteTrackerMap.put(siteId, new SiteTracker());
+    }
+
+    public void submit(Stage stage, int siteId, Runnable work) {
+        SiteTracker siteTracker = siteTrackerMap.get(siteId);
+        if (siteTracker == null || siteTracker.isStopped()) {
+            return;
+        }
+        siteTracker.taskSubmitted();
+        try {
+            stageExecutorMap.get(stage).execute(() -> runTask(siteTracker, work));
+        } catch (RejectedExecutionException e) {
+            siteTracker.taskCompleted();
+            throw e;
+        }
+    }
+
+    public void awaitSite(int siteId) throws InterruptedException {
+        SiteTracker siteTracker = siteTrackerMap.get(siteId);
+        try {
+            siteTracker.awaitCompletion();
+        } finally {
+            siteTrackerMap.remove(siteId);
+        }
+    }
+
+    public void cancelSite(int siteId) {
+        SiteTracker siteTracker = siteTrackerMap.remove(siteId);
+        if (siteTracker != null) {
+            siteTracker.cancel();
+        }
+    }
+
+    public void cancelAll() {
+        siteTrackerMap.values().forEach(SiteTracker::cancel);
+        siteTrackerMap.clear();
+        stageExecutorMap.values().forEach(stageExecutor -> stageExecutor.getQueue().clear());
+    }
+
+    public long getFetchQueueDepth() {
+        ForkJoinPool currentFetchPool = fetchPool;
+        return currentFetchPool == null
+                ? 0 : currentFetchPool.getQueuedTaskCount() + currentFetchPool.getQueuedSubmissionCount();
+    }
+
+    public int getFetchActiveThreads() {
+        ForkJoinPool currentFetchPool = fetchPool;
+        return currentFetchPool == null ? 0 : currentFetchPool.getActiveThreadCount();
+    }
+
+    public int getQueueDepth(Stage stage) {
+        return stageExecutorMap.get(stage).getQueue().size();
+    }
+
+    public List<StageStatistics> getStatistics() {
+        List<StageStatistics> statistics = new ArrayList<>();
+        ForkJoinPool currentFetchPool = fetchPool;
+        statistics.add(new StageStatistics("FETCH", fetchThreads,
+                currentFetchPool == null ? 0 : currentFetchPool.getQueuedTaskCount(), fetchedPages.sum()));
+        for (StageExecutor stageExecutor : stageExecutorMap.values()) {
+            statistics.add(new StageStatistics(stageExecutor.stage.name(), stageExecutor.getMaximumPoolSize(),
+                    stageExecutor.getQueue().size(), stageExecutor.processed.sum()));
+        }
+        return statistics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancelAll();
+        stageExecutorMap.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    private void runTask(SiteTracker siteTracker, Runnable work) {
+        try {
+            if (!siteTracker.isStopped()) {
+                work.run();
+            }
+        } catch (Exception exception) {
+            log.warn("Exception '{}' in crawl pipeline stage", exception.toString());
+            siteTracker.fail(exception);
+        } finally {
+            siteTracker.taskCompleted();
+        }
+    }
+
+    private int orDefault(int configuredThreads, int defaultThreads) {
+        return configuredThreads > 0 ? configuredThreads : defaultThreads;
+    }
+
+    private static final class StageExecutor extends ThreadPoolExecutor {
+
+        private final Stage stage;
+        private final LongAdder processed = new LongAdder();
+
+        private StageExecutor(Stage stage, int threads, int queueCapacity) {
+            super(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                    new StageThreadFactory(stage), StageExecutor::blockUntilQueued);
+            this.stage = stage;
+            allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        protected void afterExecute(Runnable runnable, Throwable throwable) {
+            processed.increment();
+        }
+
+        private static void blockUntilQueued(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Crawl pipeline is shut down");
+            }
+            try {
+                executor.getQueue().put(runnable);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for crawl pipeline queue", e);
+            }
+        }
+    }
+
+    private static final class StageThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private StageThreadFactory(Stage stage) {
+            this.prefix = "pipeline-" + stage.name().toLowerCase() + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static final class SiteTracker {
+
+        private int pendingTasks;
+        private boolean cancelled;
+        private Exception failure;
+
+        synchronized void taskSubmitted() {
+            pendingTasks++;
+        }
+
+        synchronized void taskCompleted() {
+            pendingTasks--;
+            if (pendingTasks <= 0) {
+                notifyAll();
+            }
+        }
+
+        synchronized boolean isStopped() {
+            return cancelled || failure != null;
+        }
+
+        synchronized void fail(Exception exception) {
+            if (failure == null) {
+                failure = exception;
+            }
+            notifyAll();
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        synchronized void awaitCompletion() throws InterruptedException {
+            while (pendingTasks > 0 && !isStopped()) {
+                wait();
+            }
+            if (cancelled) {
+                throw new CancellationException("Crawl pipeline cancelled");
+            }
+            if (failure != null) {
+                throw new SiteException("Crawl pipeline failed: " + failure, failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package searchengine.services;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import searchengine.util.PropertiesHolder;
+
+import javax.annotation.PreDestroy;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs the crawls of all sites: one coordinator thread per site and crawl workers on the shared fetch pool.
+ * The fetch pool size caps the workers of all sites together, each site gets an equal share of it
+ * and may use more only while no other site is waiting for a worker.
+ * Cancelling interrupts in-flight fetches, which aborts their HTTP exchanges instead of waiting for timeouts.
+ */
+@Component
+@Log4j2
+public class CrawlScheduler {
+
+    private final CrawlPipeline crawlPipeline;
+    private final long stopTimeoutMillis;
+    private final Map<Integer, SiteSlot> siteSlots = new LinkedHashMap<>();
+    private final Set<Thread> fetchingThreads = ConcurrentHashMap.newKeySet();
+    private int runningWorkers;
+    private volatile boolean isCancelled = false;
+    // replaced by start(), read by crawler and cancelling threads
+    private volatile ForkJoinPool fetchPool = new ForkJoinPool();
+    private volatile ExecutorService siteExecutor = Executors.newCachedThreadPool();
+
+    public CrawlScheduler(CrawlPipeline crawlPipeline, PropertiesHolder properties) {
+        this.crawlPipeline = crawlPipeline;
+        this.stopTimeoutMillis = properties.getStopTimeoutMillis();
+    }
+
+    public synchronized void start() {
+        isCancelled = false;
+        runningWorkers = 0;
+        siteSlots.clear();
+        fetchPool = crawlPipeline.newFetchPool();
+        siteExecutor = Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Called once every site has finished, so that single page indexing can fetch again after a stop.
+     */
+    public synchronized void finish() {
+        isCancelled = false;
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    public void submitSite(String siteName, Runnable siteCrawl) {
+        siteExecutor.execute(() -> {
+            Thread.currentThread().setName("site-" + siteName);
+            siteCrawl.run();
+        });
+    }
+
+    public synchronized void registerSite(int siteId, int maxWorkers, CrawlFrontier frontier) {
+        siteSlots.put(siteId, new SiteSlot(Math.max(1, maxWorkers), frontier));
+    }
+
+    public void unregisterSite(int siteId) {
+        List<CrawlFrontier> waitingFrontiers;
+        synchronized (this) {
+            siteSlots.remove(siteId);
+            waitingFrontiers = findWaitingFrontiers();
+        }
+        waitingFrontiers.forEach(CrawlFrontier::requestWorker);
+    }
+
+    public void startWorker(PageCrawlerUnit pageCrawlerUnit) {
+        fetchPool.execute(pageCrawlerUnit);
+    }
+
+    public synchronized boolean tryAcquireWorker(int siteId) {
+        SiteSlot slot = siteSlots.get(siteId);
+        if (isCancelled || slot == null || runningWorkers >= crawlPipeline.getFetchThreads()
+                || slot.runningWorkers >= slot.maxWorkers
+                || slot.runningWorkers >= getFairShare() && isAnotherSiteWaiting(slot)) {
+            return false;
+        }
+        slot.runningWorkers++;
+        runningWorkers++;
+        return true;
+    }
+
+    public void releaseWorker(int siteId) {
+        List<CrawlFrontier> waitingFrontiers;
+        synchronized (this) {
+            SiteSlot slot = siteSlots.get(siteId);
+            if (slot != null) {
+                slot.runningWorkers--;
+            }
+            runningWorkers--;
+            waitingFrontiers = findWaitingFrontiers();
+        }
+        waitingFrontiers.forEach(CrawlFrontier::requestWorker);
+    }
+
+    /**
+     * True when the site runs more workers than its share and another site waits for one.
+     */
+    public synchronized boolean shouldYield(int siteId) {
+        SiteSlot slot = siteSlots.get(siteId);
+        return slot != null && slot.runningWorkers > getFairShare() && isAnotherSiteWaiting(slot);
+    }
+
+    public void beginFetch() throws InterruptedIOException {
+        checkNotCancelled();
+        fetchingThreads.add(Thread.currentThread());
+    }
+
+    public void endFetch() {
+        fetchingThreads.remove(Thread.currentThread());
+    }
+
+    /**
+     * A page read while the crawl was being cancelled may be cut short, so it is rejected.
+     */
+    public void checkNotCancelled() throws InterruptedIOException {
+        if (isCancelled) {
+            throw new InterruptedIOException("Crawl cancelled");
+        }
+    }
+
+    public void cancelAll() {
+        List<CrawlFrontier> frontiers;
+        synchronized (this) {
+            isCancelled = true;
+            frontiers = siteSlots.values().stream().map(slot -> slot.frontier).toList();
+        }
+        frontiers.forEach(CrawlFrontier::stop);
+        fetchPool.shutdownNow();
+        crawlPipeline.cancelAll();
+        fetchingThreads.forEach(Thread::interrupt);
+        log.info("Crawl cancelled: {} fetches interrupted", fetchingThreads.size());
+    }
+
+    /**
+     * Waits until every site has recorded its final status or the stop timeout runs out.
+     */
+    public boolean awaitSites() throws InterruptedException {
+        siteExecutor.shutdown();
+        return siteExecutor.awaitTermination(stopTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancelAll();
+        siteExecutor.shutdownNow();
+    }
+
+    private int getFairShare() {
+        return Math.max(1, crawlPipeline.getFetchThreads() / Math.max(1, siteSlots.size()));
+    }
+
+    private boolean isAnotherSiteWaiting(SiteSlot requestingSlot) {
+        int fairShare = getFairShare();
+        for (SiteSlot slot : siteSlots.values()) {
+            if (slot != requestingSlot && slot.isWaiting(fairShare)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<CrawlFrontier> findWaitingFrontiers() {
+        if (isCancelled) {
+            return List.of();
+        }
+        int fairShare = getFairShare();
+        List<CrawlFrontier> waitingFrontiers = new ArrayList<>();
+        for (SiteSlot slot : siteSlots.values()) {
+            if (slot.isWaiting(fairShare)) {
+                waitingFrontiers.add(slot.frontier);
+            }
+        }
+        return waitingFrontiers;
+    }
+
+    private static final class SiteSlot {
+
+        private final int maxWorkers;
+        private final CrawlFrontier frontier;
+        private int runningWorkers;
+
+        private SiteSlot(int maxWorkers, CrawlFrontier frontier) {
+            this.maxWorkers = maxWorkers;
+            this.frontier = frontier;
+        }
+
+        private boolean isWaiting(int fairShare) {
+            return runningWorkers < Math.min(fairShare, maxWorkers) && frontier.hasQueuedUrls();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package searchengine.services;
+
+import lombok.extern.log4j.Log4j2;
+import searchengine.exceptions.SiteException;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only journal of the urls scheduled during a site crawl. Each record is a length-prefixed UTF-8 url
+ * written into a memory-mapped region, so it survives a JVM crash as soon as it is appended.
+ * The length is written after the url bytes, a zero length marks the end of the journal.
+ */
+@Log4j2
+public class FrontierJournal implements AutoCloseable {
+
+    private static final int REGION_SIZE = 4 * 1024 * 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long checkpointIntervalMillis;
+    private final List<String> journaledUrls;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long lastCheckpointMillis = System.currentTimeMillis();
+
+    private FrontierJournal(Path file, long checkpointIntervalMillis, boolean isResumed) throws IOException {
+        this.file = file;
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        if (!isResumed) {
+            Files.deleteIfExists(file);
+        }
+        journaledUrls = new ArrayList<>();
+        long end = isResumed ? readRecords(file, journaledUrls) : 0;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapRegion(end, REGION_SIZE);
+    }
+
+    public static FrontierJournal create(Path file, long checkpointIntervalMillis) {
+        try {
+            return new FrontierJournal(file, checkpointIntervalMillis, false);
+        } catch (IOException e) {
+            throw new SiteException("Unable to create frontier journal " + file, e);
+        }
+    }
+
+    public static FrontierJournal resume(Path file, long checkpointIntervalMillis) {
+        try {
+            return new FrontierJournal(file, checkpointIntervalMillis, true);
+        } catch (IOException e) {
+            throw new SiteException("Unable to open frontier journal " + file, e);
+        }
+    }
+
+    /**
+     * Urls found in the journal when it was resumed, in the order they were scheduled.
+     */
+    public List<String> getJournaledUrls() {
+        return journaledUrls;
+    }
+
+    public synchronized void append(String url) {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        int recordSize = Integer.BYTES + bytes.length;
+        // keep room for the zero length that terminates the journal
+        if (region.remaining() < recordSize + Integer.BYTES) {
+            remap(Math.max(REGION_SIZE, recordSize + Integer.BYTES));
+        }
+        int recordStart = region.position();
+        region.position(recordStart + Integer.BYTES);
+        region.put(bytes);
+        region.putInt(region.position(), 0);
+        region.putInt(recordStart, bytes.length);
+        if (System.currentTimeMillis() - lastCheckpointMillis >= checkpointIntervalMillis) {
+            checkpoint();
+        }
+    }
+
+    public synchronized void checkpoint() {
+        region.force();
+        lastCheckpointMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            region.force();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Unable to close frontier journal '{}': '{}'", file, e.toString());
+        }
+    }
+
+    public void delete() {
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete frontier journal '{}': '{}'", file, e.toString());
+        }
+    }
+
+    private void remap(int size) {
+        region.force();
+        try {
+            mapRegion(regionStart + region.position(), size);
+        } catch (IOException e) {
+            throw new SiteException("Unable to extend frontier journal " + file, e);
+        }
+    }
+
+    private void mapRegion(long start, int size) throws IOException {
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+        regionStart = start;
+    }
+
+    private static long readRecords(Path file, List<String> urls) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long end = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int length = input.readInt();
+                if (length <= 0) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                input.readFully(bytes);
+                urls.add(new String(bytes, StandardCharsets.UTF_8));
+                end += Integer.BYTES + length;
+            }
+        } catch (EOFException ignored) {
+            // a record cut short by a crash is dropped and overwritten by the next append
+        }
+        return end;
+    }
+}
@@ -0,0 +1,191 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import searchengine.config.Site;
+import searchengine.util.PropertiesHolder;
+import searchengine.util.StringUtil;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class HostRateLimiter {
+
+    private static final long MAX_WAIT_MILLIS = 100;
+
+    private final PropertiesHolder properties;
+    private final ConcurrentMap<String, HostThrottle> throttleMap = new ConcurrentHashMap<>();
+
+    /**
+     * A robots.txt crawl delay lowers the request rate below the configured one, never raises it.
+     * The host's throttle is updated in place, so that fetches already in flight release into it.
+     */
+    public void configure(Site site, Double crawlDelaySeconds) {
+        double configuredRequestsPerSecond = site.getRequestsPerSecond() == null
+                ? properties.getRequestsPerSecond() : site.getRequestsPerSecond();
+        double requestsPerSecond = crawlDelaySeconds == null
+                ? configuredRequestsPerSecond : Math.min(configuredRequestsPerSecond, 1 / crawlDelaySeconds);
+        int maxConcurrency = site.getMaxConcurrency() == null
+                ? properties.getMaxConcurrency() : site.getMaxConcurrency();
+        String host = StringUtil.getHost(site.getUrl());
+        throttleMap.computeIfAbsent(host, key -> createThrottle(requestsPerSecond, maxConcurrency))
+                .reconfigure(requestsPerSecond, properties.getRequestsBurst(), getMinConcurrency(maxConcurrency),
+                        maxConcurrency);
+        log.info("Politeness for host '{}': {} requests/s, up to {} concurrent requests",
+                host, requestsPerSecond, maxConcurrency);
+    }
+
+    public void acquire(String pagePath) throws InterruptedException {
+        ForkJoinPool.managedBlock(new PermitBlocker(getThrottle(pagePath)));
+    }
+
+    public void release(String pagePath, long latencyMillis, int httpStatusCode) {
+        HostThrottle throttle = getThrottle(pagePath);
+        if (httpStatusCode == 429 || httpStatusCode == 503 || latencyMillis > properties.getSlowResponseMillis()) {
+            throttle.onCongestion();
+        } else {
+            throttle.onSuccess();
+        }
+    }
+
+    public void releaseTimedOut(String pagePath) {
+        getThrottle(pagePath).onCongestion();
+    }
+
+    public void releaseFailed(String pagePath) {
+        getThrottle(pagePath).onFailure();
+    }
+
+    private HostThrottle getThrottle(String pagePath) {
+        return throttleMap.computeIfAbsent(StringUtil.getHost(pagePath),
+                host -> createThrottle(properties.getRequestsPerSecond(), properties.getMaxConcurrency()));
+    }
+
+    private int getMinConcurrency(int maxConcurrency) {
+        return Math.min(properties.getMinConcurrency(), maxConcurrency);
+    }
+
+    private HostThrottle createThrottle(double requestsPerSecond, int maxConcurrency) {
+        int minConcurrency = getMinConcurrency(maxConcurrency);
+        int initialConcurrency = Math.max(minConcurrency, Math.min(properties.getInitialConcurrency(), maxConcurrency));
+        return new HostThrottle(requestsPerSecond, properties.getRequestsBurst(),
+                initialConcurrency, minConcurrency, maxConcurrency);
+    }
+
+    private static final class HostThrottle {
+
+        private double tokensPerNano;
+        private int burst;
+        private int minConcurrency;
+        private int maxConcurrency;
+
+        private double tokens;
+        private long lastRefillNanos;
+        private double concurrencyLimit;
+        private int inFlight;
+
+        private HostThrottle(double requestsPerSecond, int burst, int initialConcurrency,
+                             int minConcurrency, int maxConcurrency) {
+            this.lastRefillNanos = System.nanoTime();
+            this.tokens = 1;
+            reconfigure(requestsPerSecond, burst, minConcurrency, maxConcurrency);
+            this.concurrencyLimit = initialConcurrency;
+        }
+
+        /**
+         * Keeps the permits in flight and the tokens earned so far, the concurrency limit is clamped to the new range.
+         */
+        synchronized HostThrottle reconfigure(double requestsPerSecond, int burst, int minConcurrency,
+                                              int maxConcurrency) {
+            if (tokensPerNano > 0) {
+                refill();
+            }
+            this.tokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.burst = Math.max(1, burst);
+            this.minConcurrency = Math.max(1, minConcurrency);
+            this.maxConcurrency = Math.max(this.minConcurrency, maxConcurrency);
+            this.concurrencyLimit = Math.max(this.minConcurrency, Math.min(this.maxConcurrency, concurrencyLimit));
+            this.tokens = Math.min(this.burst, tokens);
+            notifyAll();
+            return this;
+        }
+
+        synchronized boolean tryAcquire() {
+            refill();
+            if (inFlight >= (int) concurrencyLimit || tokens < 1) {
+                return false;
+            }
+            tokens--;
+            inFlight++;
+            return true;
+        }
+
+        synchronized void awaitPermit() throws InterruptedException {
+            while (!tryAcquire()) {
+                long waitMillis = inFlight >= (int) concurrencyLimit
+                        ? MAX_WAIT_MILLIS
+                        : Math.min(MAX_WAIT_MILLIS, TimeUnit.NANOSECONDS.toMillis((long) ((1 - tokens) / tokensPerNano)));
+                wait(Math.max(1, waitMillis));
+            }
+        }
+
+        synchronized void onSuccess() {
+            concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1 / concurrencyLimit);
+            releasePermit();
+        }
+
+        synchronized void onCongestion() {
+            concurrencyLimit = Math.max(minConcurrency, concurrencyLimit / 2);
+            tokens = Math.min(tokens, 0);
+            releasePermit();
+        }
+
+        synchronized void onFailure() {
+            releasePermit();
+        }
+
+        private void releasePermit() {
+            inFlight = Math.max(0, inFlight - 1);
+            notifyAll();
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+        }
+    }
+
+    private static final class PermitBlocker implements ForkJoinPool.ManagedBlocker {
+
+        private final HostThrottle throttle;
+        private boolean acquired;
+
+        private PermitBlocker(HostThrottle throttle) {
+            this.throttle = throttle;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            if (!acquired) {
+                throttle.awaitPermit();
+                acquired = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            if (!acquired) {
+                acquired = throttle.tryAcquire();
+            }
+            return acquired;
+        }
+    }
+}
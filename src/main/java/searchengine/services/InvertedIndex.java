@@ -0,0 +1,327 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import searchengine.dto.indexing.Posting;
+import searchengine.model.LemmaEntity;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.repository.IndexBatchRepository;
+import searchengine.services.interfaces.SearchIndex;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process copy of search_index used to evaluate queries: per site, every lemma maps to the ids of the pages
+ * containing it in ascending order together with their ranks. It is loaded once on startup and kept up to date
+ * by the index writers after each committed batch, so a search only reads the result pages from the database.
+ * Posting lists are never changed in place: a writer publishes a new list, and an append reuses the spare
+ * capacity of the arrays beyond the size the previous list can see.
+ */
+@Component
+@ConditionalOnProperty(name = "search.index", havingValue = "memory", matchIfMissing = true)
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Log4j2
+public class InvertedIndex implements SearchIndex {
+
+    private final IndexBatchRepository indexBatchRepository;
+    private final Map<Integer, SiteIndex> siteIndexes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        long loadStart = System.currentTimeMillis();
+        Map<Integer, SiteIndex> loadedIndexes = new HashMap<>();
+        PostingListBuilder builder = new PostingListBuilder();
+        long[] postingCount = new long[1];
+        indexBatchRepository.streamPostings(resultSet -> {
+            int lemmaId = resultSet.getInt("lemma_id");
+            if (lemmaId != builder.lemmaId) {
+                builder.publish();
+                builder.start(loadedIndexes.computeIfAbsent(resultSet.getInt("site_id"), id -> new SiteIndex()),
+                        resultSet.getString("lemma"), lemmaId);
+            }
+            builder.add(resultSet.getInt("page_id"), resultSet.getFloat("lemma_rank"));
+            postingCount[0]++;
+        });
+        builder.publish();
+        indexBatchRepository.streamCanonicalPageIds(resultSet -> loadedIndexes
+                .computeIfAbsent(resultSet.getInt("site_id"), id -> new SiteIndex()).pageIds
+                .set(resultSet.getInt("id")));
+        siteIndexes.putAll(loadedIndexes);
+        log.info("Inverted index loaded: {} sites, {} postings in {} ms",
+                loadedIndexes.size(), postingCount[0], System.currentTimeMillis() - loadStart);
+    }
+
+    @Override
+    public List<LemmaEntity> findLemmas(Collection<String> lemmas, Collection<SiteEntity> sites) {
+        List<LemmaEntity> lemmaEntities = new ArrayList<>();
+        for (SiteEntity site : sites) {
+            SiteIndex siteIndex = siteIndexes.get(site.getId());
+            if (siteIndex == null) {
+                continue;
+            }
+            for (String lemma : lemmas) {
+                PostingList postingList = siteIndex.postingLists.get(lemma);
+                if (postingList != null) {
+                    LemmaEntity lemmaEntity = new LemmaEntity(lemma, postingList.size, site);
+                    lemmaEntity.setId(postingList.lemmaId);
+                    lemmaEntities.add(lemmaEntity);
+                }
+            }
+        }
+        return lemmaEntities;
+    }
+
+    @Override
+    public int getPageCount(int siteId) {
+        SiteIndex siteIndex = siteIndexes.get(siteId);
+        if (siteIndex == null) {
+            return 0;
+        }
+        synchronized (siteIndex) {
+            return siteIndex.pageIds.cardinality();
+        }
+    }
+
+    @Override
+    public Map<Integer, Float> findPages(Collection<LemmaEntity> lemmas, Set<Integer> skippedSiteIds) {
+        Set<String> requiredLemmas = new HashSet<>();
+        Map<Integer, List<String>> lemmasBySiteId = new HashMap<>();
+        for (LemmaEntity lemma : lemmas) {
+            requiredLemmas.add(lemma.getLemma());
+            lemmasBySiteId.computeIfAbsent(lemma.getSite().getId(), id -> new ArrayList<>()).add(lemma.getLemma());
+        }
+        Map<Integer, Float> relevanceByPageId = new HashMap<>();
+        lemmasBySiteId.forEach((siteId, siteLemmas) -> {
+            SiteIndex siteIndex = siteIndexes.get(siteId);
+            if (siteIndex != null && !skippedSiteIds.contains(siteId)
+                    && new HashSet<>(siteLemmas).size() == requiredLemmas.size()) {
+                intersect(siteIndex, siteLemmas, relevanceByPageId);
+            }
+        });
+        return relevanceByPageId;
+    }
+
+    @Override
+    public void apply(int siteId, Set<Integer> removedPageIds, Collection<String> removedPageLemmas,
+                      Collection<PageEntity> writtenPages, Collection<Posting> postings, Map<String, Integer> lemmaIds) {
+        SiteIndex siteIndex = siteIndexes.computeIfAbsent(siteId, id -> new SiteIndex());
+        Map<String, PostingListBuilder> additions = new HashMap<>();
+        for (Posting posting : postings) {
+            additions.computeIfAbsent(posting.getLemma(), lemma -> new PostingListBuilder())
+                    .add(posting.getPage().getId(), posting.getRank());
+        }
+        Set<String> touchedLemmas = new HashSet<>(additions.keySet());
+        touchedLemmas.addAll(removedPageLemmas);
+        synchronized (siteIndex) {
+            removedPageIds.forEach(siteIndex.pageIds::clear);
+            for (PageEntity page : writtenPages) {
+                siteIndex.pageIds.set(page.getId(), page.getCanonicalPage() == null);
+            }
+            for (String lemma : touchedLemmas) {
+                PostingList current = siteIndex.postingLists.get(lemma);
+                PostingListBuilder addition = additions.get(lemma);
+                Integer lemmaId = lemmaIds.get(lemma);
+                PostingList updated = update(current, lemmaId == null ? 0 : lemmaId, removedPageIds, addition);
+                if (updated == null) {
+                    siteIndex.postingLists.remove(lemma);
+                } else {
+                    siteIndex.postingLists.put(lemma, updated);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void removeSite(int siteId) {
+        siteIndexes.remove(siteId);
+    }
+
+    private void intersect(SiteIndex siteIndex, List<String> lemmas, Map<Integer, Float> relevanceByPageId) {
+        List<PostingList> postingLists = new ArrayList<>();
+        for (String lemma : new HashSet<>(lemmas)) {
+            PostingList postingList = siteIndex.postingLists.get(lemma);
+            if (postingList == null) {
+                return;
+            }
+            postingLists.add(postingList);
+        }
+        postingLists.sort(Comparator.comparingInt(postingList -> postingList.size));
+        PostingList shortest = postingLists.get(0);
+        int[] pageIds = Arrays.copyOf(shortest.pageIds, shortest.size);
+        float[] relevances = Arrays.copyOf(shortest.ranks, shortest.size);
+        int count = shortest.size;
+        for (int i = 1; i < postingLists.size() && count > 0; i++) {
+            PostingList postingList = postingLists.get(i);
+            int kept = 0;
+            int from = 0;
+            for (int j = 0; j < count && from < postingList.size; j++) {
+                int index = Arrays.binarySearch(postingList.pageIds, from, postingList.size, pageIds[j]);
+                if (index >= 0) {
+                    pageIds[kept] = pageIds[j];
+                    relevances[kept] = relevances[j] + postingList.ranks[index];
+                    kept++;
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+            count = kept;
+        }
+        for (int i = 0; i < count; i++) {
+            relevanceByPageId.put(pageIds[i], relevances[i]);
+        }
+    }
+
+    /**
+     * Returns the posting list without the removed pages and with the added ones, or null when it ends up empty.
+     */
+    private PostingList update(PostingList current, int lemmaId, Set<Integer> removedPageIds,
+                               PostingListBuilder addition) {
+        if (addition != null) {
+            addition.sort();
+        }
+        if (current == null) {
+            return addition == null || addition.size == 0 ? null : addition.toPostingList(lemmaId);
+        }
+        int newLemmaId = lemmaId == 0 ? current.lemmaId : lemmaId;
+        boolean hasRemovals = false;
+        for (Iterator<Integer> iterator = removedPageIds.iterator(); iterator.hasNext() && !hasRemovals; ) {
+            hasRemovals = Arrays.binarySearch(current.pageIds, 0, current.size, iterator.next()) >= 0;
+        }
+        if (!hasRemovals && addition != null
+                && (current.size == 0 || addition.pageIds[0] > current.pageIds[current.size - 1])) {
+            return current.append(newLemmaId, addition);
+        }
+        PostingListBuilder merged = new PostingListBuilder();
+        int additionIndex = 0;
+        int additionSize = addition == null ? 0 : addition.size;
+        for (int i = 0; i < current.size; i++) {
+            int pageId = current.pageIds[i];
+            while (additionIndex < additionSize && addition.pageIds[additionIndex] < pageId) {
+                merged.add(addition.pageIds[additionIndex], addition.ranks[additionIndex]);
+                additionIndex++;
+            }
+            if (additionIndex < additionSize && addition.pageIds[additionIndex] == pageId) {
+                continue;
+            }
+            if (!removedPageIds.contains(pageId)) {
+                merged.add(pageId, current.ranks[i]);
+            }
+        }
+        for (; additionIndex < additionSize; additionIndex++) {
+            merged.add(addition.pageIds[additionIndex], addition.ranks[additionIndex]);
+        }
+        return merged.size == 0 ? null : merged.toPostingList(newLemmaId);
+    }
+
+    private static final class SiteIndex {
+
+        private final Map<String, PostingList> postingLists = new ConcurrentHashMap<>();
+        // pages indexed in full, guarded by the site index itself
+        private final BitSet pageIds = new BitSet();
+    }
+
+    private static final class PostingList {
+
+        private final int lemmaId;
+        private final int[] pageIds;
+        private final float[] ranks;
+        private final int size;
+
+        private PostingList(int lemmaId, int[] pageIds, float[] ranks, int size) {
+            this.lemmaId = lemmaId;
+            this.pageIds = pageIds;
+            this.ranks = ranks;
+            this.size = size;
+        }
+
+        /**
+         * Writes the added pages behind the visible part of the arrays, growing them if needed.
+         * Only the newest list of a lemma is ever appended to, so no reader sees the slots being written.
+         */
+        private PostingList append(int newLemmaId, PostingListBuilder addition) {
+            int newSize = size + addition.size;
+            int[] newPageIds = pageIds;
+            float[] newRanks = ranks;
+            if (newSize > pageIds.length) {
+                int capacity = Math.max(newSize, pageIds.length + (pageIds.length >> 1));
+                newPageIds = Arrays.copyOf(pageIds, capacity);
+                newRanks = Arrays.copyOf(ranks, capacity);
+            }
+            System.arraycopy(addition.pageIds, 0, newPageIds, size, addition.size);
+            System.arraycopy(addition.ranks, 0, newRanks, size, addition.size);
+            return new PostingList(newLemmaId, newPageIds, newRanks, newSize);
+        }
+    }
+
+    private static final class PostingListBuilder {
+
+        private SiteIndex siteIndex;
+        private String lemma;
+        private int lemmaId;
+        private int[] pageIds = new int[8];
+        private float[] ranks = new float[8];
+        private int size;
+
+        private void start(SiteIndex siteIndex, String lemma, int lemmaId) {
+            this.siteIndex = siteIndex;
+            this.lemma = lemma;
+            this.lemmaId = lemmaId;
+            pageIds = new int[8];
+            ranks = new float[8];
+            size = 0;
+        }
+
+        private void add(int pageId, float rank) {
+            if (size == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, size * 2);
+                ranks = Arrays.copyOf(ranks, size * 2);
+            }
+            pageIds[size] = pageId;
+            ranks[size] = rank;
+            size++;
+        }
+
+        private void sort() {
+            Integer[] order = new Integer[size];
+            boolean isSorted = true;
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+                isSorted &= i == 0 || pageIds[i - 1] < pageIds[i];
+            }
+            if (isSorted) {
+                return;
+            }
+            Arrays.sort(order, Comparator.comparingInt(i -> pageIds[i]));
+            int[] sortedPageIds = new int[pageIds.length];
+            float[] sortedRanks = new float[ranks.length];
+            for (int i = 0; i < size; i++) {
+                sortedPageIds[i] = pageIds[order[i]];
+                sortedRanks[i] = ranks[order[i]];
+            }
+            pageIds = sortedPageIds;
+            ranks = sortedRanks;
+        }
+
+        private PostingList toPostingList(int lemmaId) {
+            return new PostingList(lemmaId, pageIds, ranks, size);
+        }
+
+        /**
+         * Used while loading: hands the collected list of the current lemma over to its site.
+         */
+        private void publish() {
+            if (siteIndex != null && size > 0) {
+                siteIndex.postingLists.put(lemma, toPostingList(lemmaId));
+            }
+            siteIndex = null;
+        }
+    }
+}
@@ -1,94 +1,151 @@
 package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
-import org.jsoup.Connection;
-import org.jsoup.UnsupportedMimeTypeException;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
-import searchengine.exceptions.SiteException;
-import searchengine.model.PageEntity;
+import searchengine.dto.indexing.FetchedPage;
+import searchengine.dto.indexing.PageSnapshot;
 import searchengine.model.SiteEntity;
 import searchengine.model.Status;
 import searchengine.services.implementations.IndexingServiceImpl;
-import searchengine.util.JsoupUtil;
 import searchengine.util.StringUtil;
 
 import java.io.IOException;
-import java.net.ConnectException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
 import java.util.concurrent.RecursiveAction;
 
+/**
+ * Crawl worker of a site: takes urls from the site's frontier in priority order
+ * and queues the links it finds there, until the frontier runs dry.
+ */
 @RequiredArgsConstructor
 @Log4j2
 public class PageCrawlerUnit extends RecursiveAction {
 
     private final transient IndexingServiceImpl service;
     private final transient SiteEntity siteEntity;
-    private final String pagePath;
+    private final transient CrawlFrontier frontier;
 
-    @SneakyThrows
     @Override
     protected void compute() {
-        log.info("NEW PageCrawlerUnit created for pagePath: {}", pagePath);
         try {
-            Thread.sleep(500);
-            handlePageData();
-        } catch (UnsupportedMimeTypeException | ConnectException | SiteException ignoredException) {
-            log.warn("Exception '{}' ignored in PageCrawlerUnit while handling path: {}", ignoredException, pagePath);
+            CrawlFrontier.Entry entry;
+            while ((entry = frontier.poll()) != null) {
+                try {
+                    if (!service.getSiteStatusMap().get(siteEntity.getUrl()).equals(Status.INDEXING)) {
+                        frontier.stop();
+                        return;
+                    }
+                    crawl(entry);
+                } finally {
+                    frontier.complete();
+                }
+            }
         } catch (Exception exception) {
-            log.warn("Exception '{}' in PageCrawlerUnit while handling path: {}. " +
-                    "Indexing for site '{}' completed with error", exception, pagePath, siteEntity.getUrl());
+            log.warn("Exception '{}' in PageCrawlerUnit. Indexing for site '{}' completed with error",
+                    exception, siteEntity.getUrl());
             service.getSiteStatusMap().put(siteEntity.getUrl(), Status.FAILED);
-            throw exception;
+            frontier.fail(exception);
+        } finally {
+            frontier.workerStopped();
         }
     }
 
-    private void handlePageData() throws IOException {
-        List<PageCrawlerUnit> forkJoinPoolPagesList = new ArrayList<>();
-        String userAgent = service.getProperties().getUseragent();
-        String referrer = service.getProperties().getReferrer();
-        Connection connection = JsoupUtil.getConnection(pagePath, userAgent, referrer);
-        int httpStatusCode = connection.execute().statusCode();
-        if (httpStatusCode != 200) {
-            connection = JsoupUtil.getConnection(StringUtil.cutSlash(pagePath), userAgent, referrer);
-            httpStatusCode = connection.execute().statusCode();
+    private void crawl(CrawlFrontier.Entry entry) throws IOException, InterruptedException {
+        String pagePath = entry.getUrl();
+        log.info("Crawling pagePath: {} (depth {}, score {})", pagePath, entry.getDepth(), entry.getScore());
+        try {
+            handlePageData(pagePath, entry.getDepth() + 1);
+        } catch (IOException | IllegalArgumentException exception) {
+            if (exception instanceof InterruptedIOException
+                    && !(exception instanceof SocketTimeoutException)) {
+                throw exception;
+            }
+            // a timeout, reset or unparsable url fails this page only, the host limiter has already backed off
+            log.warn("Exception '{}' ignored in PageCrawlerUnit while handling path: {}", exception, pagePath);
         }
+    }
 
+    private void handlePageData(String pagePath, int linkDepth) throws IOException, InterruptedException {
         String pathToSave = StringUtil.cutProtocolAndHost(pagePath, siteEntity.getUrl());
-        String html = "";
-        PageEntity pageEntity = new PageEntity(pathToSave, httpStatusCode, html, siteEntity);
-        if (httpStatusCode != 200) {
-            service.savePageContentAndSiteStatusTime(pageEntity, html, siteEntity);
+        PageSnapshot previousPage = service.claimPreviousPage(siteEntity, pathToSave);
+        if (previousPage != null && service.isUnchangedSinceLastIndexing(siteEntity, pathToSave)) {
+            log.info("Page '{}' not modified according to sitemap", pagePath);
+            service.recordUnchangedVisit(siteEntity, previousPage);
+            handleStoredAnchors(previousPage, linkDepth);
+            return;
+        }
+        FetchedPage fetchedPage = previousPage == null
+                ? service.getPageFetcher().fetch(pagePath)
+                : service.getPageFetcher().fetch(pagePath, previousPage.getEtag(), previousPage.getLastModified());
+        service.getCrawlPipeline().recordFetch();
+        service.getCrawlMetrics().recordPageFetched(siteEntity.getName());
+
+        if (fetchedPage.isNotModified()) {
+            log.info("Page '{}' not modified since last indexing", pagePath);
+            service.recordUnchangedVisit(siteEntity, previousPage);
+            handleStoredAnchors(previousPage, linkDepth);
         } else {
-            Document document = connection.get();
-            html = document.outerHtml();
-            service.savePageContentAndSiteStatusTime(pageEntity, html, siteEntity);
-            service.extractLemmasAndIndexFromHtml(html, pageEntity, siteEntity);
-            Elements anchors = document.select("body").select("a");
-            handleAnchors(anchors, forkJoinPoolPagesList);
+            Document document = fetchedPage.getDocument();
+            if (document != null) {
+                handleAnchors(document.select("body").select("a"), linkDepth);
+                String canonicalUrl = findCanonicalUrl(pagePath, document);
+                if (!canonicalUrl.equals(pagePath)) {
+                    service.releasePreviousPage(siteEntity, pathToSave, previousPage);
+                    if (!service.markPageVisited(siteEntity, canonicalUrl)) {
+                        log.info("Page '{}' is an alias of '{}', which is crawled on its own", pagePath, canonicalUrl);
+                        return;
+                    }
+                    log.info("Page '{}' saved under its canonical url '{}'", pagePath, canonicalUrl);
+                    pathToSave = StringUtil.cutProtocolAndHost(canonicalUrl, siteEntity.getUrl());
+                    previousPage = service.claimPreviousPage(siteEntity, pathToSave);
+                }
+            }
+            service.processFetchedPage(siteEntity, pathToSave, fetchedPage, previousPage);
         }
-        for (PageCrawlerUnit pageCrawlerUnit : forkJoinPoolPagesList) {
-            pageCrawlerUnit.join();
+    }
+
+    /**
+     * The page's rel="canonical" link, else the url it was redirected to, as long as it is a crawlable page
+     * of this site. Otherwise the url the page was requested with.
+     */
+    private String findCanonicalUrl(String pagePath, Document document) {
+        Element canonicalLink = document.selectFirst("head link[rel=canonical][href]");
+        if (canonicalLink != null) {
+            String canonicalUrl = service.getUrlCanonicalizer().canonicalize(canonicalLink.absUrl("href"));
+            if (isSitePage(canonicalUrl)) {
+                return canonicalUrl;
+            }
         }
+        String redirectUrl = service.getUrlCanonicalizer().canonicalize(document.location());
+        return isSitePage(redirectUrl) ? redirectUrl : pagePath;
+    }
+
+    private boolean isSitePage(String url) {
+        return url != null
+                && (url.equals(siteEntity.getUrl())
+                || StringUtil.isHrefValid(siteEntity.getUrl(), url, service.getProperties().getFileExtensions()))
+                && service.isAllowedByRobots(siteEntity, url);
     }
 
-    private void handleAnchors(Elements elements, List<PageCrawlerUnit> fjpList) {
+    private void handleStoredAnchors(PageSnapshot previousPage, int linkDepth) {
+        Document storedDocument = service.loadStoredDocument(siteEntity, previousPage);
+        if (storedDocument != null) {
+            handleAnchors(storedDocument.select("body").select("a"), linkDepth);
+        }
+    }
+
+    private void handleAnchors(Elements elements, int linkDepth) {
         String fileExtensions = service.getProperties().getFileExtensions();
         for (Element anchor : elements) {
-            String href = StringUtil.getHrefFromAnchor(anchor);
-            if (StringUtil.isHrefValid(siteEntity.getUrl(), href, fileExtensions)
-                    && !StringUtil.isPageAdded(service.getWebpagesPathSet(), href)) {
-                service.getWebpagesPathSet().add(href);
-                if (!service.getSiteStatusMap().get(siteEntity.getUrl()).equals(Status.INDEXING)) {
-                    return;
-                }
-                PageCrawlerUnit pageCrawlerUnit = new PageCrawlerUnit(service, siteEntity, href);
-                fjpList.add(pageCrawlerUnit);
-                pageCrawlerUnit.fork();
+            String href = service.getUrlCanonicalizer().canonicalize(anchor.absUrl("href"));
+            if (href != null && StringUtil.isHrefValid(siteEntity.getUrl(), href, fileExtensions)
+                    && service.isAllowedByRobots(siteEntity, href)
+                    && service.markPageVisited(siteEntity, href)) {
+                frontier.offer(href, linkDepth, null);
             }
         }
     }
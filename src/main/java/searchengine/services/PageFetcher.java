@@ -0,0 +1,121 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.stereotype.Component;
+import searchengine.dto.indexing.FetchedPage;
+import searchengine.util.PropertiesHolder;
+import searchengine.util.StringUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+public class PageFetcher {
+
+    private static final int OK = 200;
+    private static final int NOT_MODIFIED = 304;
+
+    private final PropertiesHolder properties;
+    private final HostRateLimiter hostRateLimiter;
+    private final CrawlScheduler crawlScheduler;
+    private final CrawlHttpClient crawlHttpClient;
+    private final CrawlMetrics crawlMetrics;
+
+    public FetchedPage fetch(String pagePath) throws IOException, InterruptedException {
+        return fetch(pagePath, null, null);
+    }
+
+    /**
+     * The host permit is released exactly once, whatever way the fetch ends. A page read while the crawl
+     * was being cancelled is rejected only after that, so it does not count as a failed request.
+     */
+    public FetchedPage fetch(String pagePath, String etag, String lastModified)
+            throws IOException, InterruptedException {
+        hostRateLimiter.acquire(pagePath);
+        long fetchStart = System.currentTimeMillis();
+        long fetchStartNanos = System.nanoTime();
+        FetchedPage fetchedPage = null;
+        boolean isTimedOut = false;
+        try {
+            crawlScheduler.beginFetch();
+            try {
+                fetchedPage = fetchAcquired(pagePath, etag, lastModified);
+            } finally {
+                crawlScheduler.endFetch();
+            }
+        } catch (SocketTimeoutException | HttpTimeoutException timeoutException) {
+            isTimedOut = true;
+            throw timeoutException;
+        } finally {
+            release(pagePath, fetchedPage, isTimedOut, fetchStart, fetchStartNanos);
+        }
+        crawlScheduler.checkNotCancelled();
+        return fetchedPage;
+    }
+
+    private FetchedPage fetchAcquired(String pagePath, String etag, String lastModified)
+            throws IOException, InterruptedException {
+        CrawlHttpClient.Response response = null;
+        try {
+            response = execute(pagePath, etag, lastModified);
+            if (response.getStatusCode() != OK && response.getStatusCode() != NOT_MODIFIED
+                    && pagePath.endsWith("/") && !pagePath.contains("?")) {
+                response.close();
+                response = execute(StringUtil.cutSlash(pagePath), etag, lastModified);
+            }
+            Document document = response.getStatusCode() == OK ? parse(response) : null;
+            return new FetchedPage(
+                    response.getStatusCode(),
+                    document,
+                    response.getHeader("ETag"),
+                    response.getHeader("Last-Modified")
+            );
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    private void release(String pagePath, FetchedPage fetchedPage, boolean isTimedOut,
+                         long fetchStart, long fetchStartNanos) {
+        String host = StringUtil.getHost(pagePath);
+        long fetchNanos = System.nanoTime() - fetchStartNanos;
+        if (fetchedPage != null) {
+            hostRateLimiter.release(pagePath, System.currentTimeMillis() - fetchStart, fetchedPage.getStatusCode());
+            crawlMetrics.recordFetch(host, String.valueOf(fetchedPage.getStatusCode()), fetchNanos);
+        } else if (isTimedOut) {
+            hostRateLimiter.releaseTimedOut(pagePath);
+            crawlMetrics.recordFetch(host, "timeout", fetchNanos);
+        } else {
+            hostRateLimiter.releaseFailed(pagePath);
+            crawlMetrics.recordFetch(host, "error", fetchNanos);
+        }
+    }
+
+    private CrawlHttpClient.Response execute(String pagePath, String etag, String lastModified)
+            throws IOException, InterruptedException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", "text/html,application/xhtml+xml;q=0.9,*/*;q=0.1");
+        if (etag != null) {
+            headers.put("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+        return crawlHttpClient.get(pagePath, headers, true, properties.getMaxBodySize());
+    }
+
+    private Document parse(CrawlHttpClient.Response response) throws IOException {
+        try (InputStream body = response.getBody()) {
+            return Jsoup.parse(body, response.getCharset(), response.getUrl());
+        }
+    }
+}
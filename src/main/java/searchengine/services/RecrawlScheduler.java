@@ -0,0 +1,22 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.services.implementations.IndexingServiceImpl;
+import searchengine.util.PropertiesHolder;
+
+@Component
+@RequiredArgsConstructor
+public class RecrawlScheduler {
+
+    private final IndexingServiceImpl indexingService;
+    private final PropertiesHolder properties;
+
+    @Scheduled(initialDelayString = "${recrawl.interval}", fixedDelayString = "${recrawl.interval}")
+    public void refreshPagesDueForVisit() {
+        if (properties.isRecrawlEnabled()) {
+            indexingService.refreshPagesDueForVisit(properties.getRecrawlBudgetPerSite());
+        }
+    }
+}
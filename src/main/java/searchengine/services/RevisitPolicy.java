@@ -0,0 +1,71 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.dto.indexing.PageSnapshot;
+import searchengine.dto.indexing.PageVisit;
+import searchengine.model.PageEntity;
+import searchengine.util.PropertiesHolder;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates how often a page changes from the visits that found it changed or not,
+ * and schedules its next visit one expected change interval ahead.
+ * Only the fact of a change between two visits is known, not how many changes happened,
+ * so the change rate is estimated as -ln((n - x + 0.5) / (n + 0.5)) / (t / n) for x changes
+ * seen in n intervals lasting t seconds in total.
+ */
+@Component
+public class RevisitPolicy {
+
+    private final long minIntervalSeconds;
+    private final long maxIntervalSeconds;
+    private final long initialIntervalSeconds;
+
+    public RevisitPolicy(PropertiesHolder properties) {
+        this.minIntervalSeconds = TimeUnit.MINUTES.toSeconds(properties.getMinRevisitIntervalMinutes());
+        this.maxIntervalSeconds = TimeUnit.MINUTES.toSeconds(properties.getMaxRevisitIntervalMinutes());
+        this.initialIntervalSeconds = TimeUnit.MINUTES.toSeconds(properties.getInitialRevisitIntervalMinutes());
+    }
+
+    public PageVisit firstVisit(int pageId, Date now) {
+        return new PageVisit(pageId, 0, 0, 0, now, plusSeconds(now, initialIntervalSeconds));
+    }
+
+    public PageVisit nextVisit(PageSnapshot previousPage, boolean isChanged, Date now) {
+        Date lastVisited = previousPage.getLastVisited();
+        if (lastVisited == null) {
+            return firstVisit(previousPage.getId(), now);
+        }
+        long elapsedSeconds = Math.max(0, (now.getTime() - lastVisited.getTime()) / 1000);
+        int visitCount = previousPage.getVisitCount() + 1;
+        int changeCount = previousPage.getChangeCount() + (isChanged ? 1 : 0);
+        long observedSeconds = previousPage.getObservedSeconds() + elapsedSeconds;
+        long intervalSeconds = estimateInterval(visitCount, changeCount, observedSeconds);
+        return new PageVisit(previousPage.getId(), visitCount, changeCount, observedSeconds, now,
+                plusSeconds(now, intervalSeconds));
+    }
+
+    public void apply(PageVisit pageVisit, PageEntity pageEntity) {
+        pageEntity.setVisitCount(pageVisit.getVisitCount());
+        pageEntity.setChangeCount(pageVisit.getChangeCount());
+        pageEntity.setObservedSeconds(pageVisit.getObservedSeconds());
+        pageEntity.setLastVisited(pageVisit.getLastVisited());
+        pageEntity.setNextVisit(pageVisit.getNextVisit());
+    }
+
+    private long estimateInterval(int visitCount, int changeCount, long observedSeconds) {
+        if (observedSeconds == 0) {
+            return initialIntervalSeconds;
+        }
+        double meanVisitSeconds = (double) observedSeconds / visitCount;
+        double changeRate = -Math.log((visitCount - changeCount + 0.5) / (visitCount + 0.5)) / meanVisitSeconds;
+        long intervalSeconds = changeRate > 0 ? (long) (1 / changeRate) : maxIntervalSeconds;
+        return Math.max(minIntervalSeconds, Math.min(maxIntervalSeconds, intervalSeconds));
+    }
+
+    private Date plusSeconds(Date date, long seconds) {
+        return new Date(date.getTime() + seconds * 1000);
+    }
+}
@@ -0,0 +1,300 @@
+package searchengine.services;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.dto.indexing.LemmaRank;
+import searchengine.dto.indexing.PageVisit;
+import searchengine.dto.indexing.Posting;
+import searchengine.model.PageEntity;
+import searchengine.repository.IndexBatchRepository;
+import searchengine.repository.PageContentStore;
+import searchengine.services.interfaces.SearchIndex;
+import searchengine.util.LemmaFrequencyDictionary;
+import searchengine.util.PropertiesHolder;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Log4j2
+public class SiteIndexWriter {
+
+    private final int siteId;
+    private final IndexBatchRepository indexBatchRepository;
+    private final PageContentStore pageContentStore;
+    private final TransactionTemplate transactionTemplate;
+    private final CrawlMetrics crawlMetrics;
+    private final SearchIndex searchIndex;
+    private final int batchSize;
+    private final int pageBatchSize;
+    private final long flushIntervalMillis;
+    private final long statusIntervalMillis;
+
+    private final Map<String, Integer> lemmaIdCache = new HashMap<>();
+    // lemma counts of the whole site, each buffer takes the change since the previous swap
+    private final LemmaFrequencyDictionary lemmaFrequencies = new LemmaFrequencyDictionary();
+    // duplicates whose canonical page has no id yet, guarded by flushLock
+    private final List<PageEntity> unlinkedDuplicates = new ArrayList<>();
+    // ids of duplicates whose canonical page changed or was removed, to be indexed again by the caller
+    private final Queue<Integer> releasedDuplicates = new ConcurrentLinkedQueue<>();
+    private final ReadWriteLock bufferLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile Buffer buffer = new Buffer();
+    private volatile long lastFlushMillis = System.currentTimeMillis();
+    private long lastStatusUpdateMillis = System.currentTimeMillis();
+
+    public SiteIndexWriter(int siteId, IndexBatchRepository indexBatchRepository, PageContentStore pageContentStore,
+                           TransactionTemplate transactionTemplate, CrawlMetrics crawlMetrics,
+                           SearchIndex searchIndex, PropertiesHolder properties) {
+        this.siteId = siteId;
+        this.indexBatchRepository = indexBatchRepository;
+        this.pageContentStore = pageContentStore;
+        this.transactionTemplate = transactionTemplate;
+        this.crawlMetrics = crawlMetrics;
+        this.searchIndex = searchIndex;
+        this.batchSize = properties.getIndexBatchSize();
+        this.pageBatchSize = properties.getIndexPageBatchSize();
+        this.flushIntervalMillis = properties.getIndexFlushIntervalMillis();
+        this.statusIntervalMillis = properties.getSiteStatusIntervalMillis();
+    }
+
+    /**
+     * Queues the page row and its postings. A page with id 0 is inserted and gets its id on flush,
+     * any other page overwrites the stored row with the same id.
+     */
+    public void addPage(PageEntity page, Map<String, LemmaRank> lemmaRanks) {
+        bufferLock.readLock().lock();
+        try {
+            Buffer currentBuffer = buffer;
+            for (Map.Entry<String, LemmaRank> lemmaRank : lemmaRanks.entrySet()) {
+                String lemma = lemmaFrequencies.increment(lemmaRank.getKey());
+                currentBuffer.postings.add(new Posting(page, lemma, lemmaRank.getValue().getRank(),
+                        lemmaRank.getValue().getPositions()));
+            }
+            currentBuffer.postingCount.addAndGet(lemmaRanks.size());
+            currentBuffer.pages.add(page);
+            currentBuffer.pageCount.incrementAndGet();
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        flushIfNeeded();
+    }
+
+    /**
+     * Queues the visit statistics of a page that was found unchanged.
+     */
+    public void addVisit(PageVisit pageVisit) {
+        bufferLock.readLock().lock();
+        try {
+            buffer.visits.add(pageVisit);
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        flushIfNeeded();
+    }
+
+    public void removePages(Collection<Integer> pageIds) {
+        bufferLock.readLock().lock();
+        try {
+            buffer.pagesToRemove.addAll(pageIds);
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+        flushIfNeeded();
+    }
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            writeBuffer(swapBuffer(), true);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the duplicates released by the flushes since the last call.
+     */
+    public List<Integer> drainReleasedDuplicates() {
+        List<Integer> pageIds = new ArrayList<>();
+        for (Integer pageId = releasedDuplicates.poll(); pageId != null; pageId = releasedDuplicates.poll()) {
+            pageIds.add(pageId);
+        }
+        return pageIds;
+    }
+
+    public void discard() {
+        swapBuffer();
+    }
+
+    /**
+     * No page is being added while the write lock is held, so the drained counts match the swapped postings.
+     */
+    private Buffer swapBuffer() {
+        bufferLock.writeLock().lock();
+        try {
+            Buffer filledBuffer = buffer;
+            filledBuffer.frequencyDeltas = lemmaFrequencies.drainDeltas();
+            buffer = new Buffer();
+            return filledBuffer;
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+    }
+
+    private void writeBuffer(Buffer filledBuffer, boolean isFinal) {
+        if (filledBuffer.isEmpty()) {
+            lastFlushMillis = System.currentTimeMillis();
+            return;
+        }
+        Map<String, Integer> deltasToWrite = new HashMap<>(filledBuffer.frequencyDeltas);
+        List<PageEntity> pagesToWrite = new ArrayList<>(filledBuffer.pages);
+        List<Posting> postingsToWrite = new ArrayList<>(filledBuffer.postings);
+        Set<Integer> pagesToRemoveNow = new HashSet<>(filledBuffer.pagesToRemove);
+        List<PageVisit> visitsToWrite = new ArrayList<>(filledBuffer.visits);
+        boolean isStatusUpdateDue = !pagesToWrite.isEmpty()
+                && (isFinal || System.currentTimeMillis() - lastStatusUpdateMillis >= statusIntervalMillis);
+
+        long flushStart = System.currentTimeMillis();
+        Set<String> removedPageLemmas;
+        List<Integer> releasedDuplicateIds = new ArrayList<>();
+        try {
+            removedPageLemmas = writeBatch(deltasToWrite, pagesToWrite, postingsToWrite, pagesToRemoveNow,
+                    visitsToWrite, isStatusUpdateDue, releasedDuplicateIds);
+        } catch (RuntimeException exception) {
+            lemmaIdCache.clear();
+            throw exception;
+        }
+        releasedDuplicates.addAll(releasedDuplicateIds);
+        searchIndex.apply(siteId, pagesToRemoveNow, removedPageLemmas, pagesToWrite, postingsToWrite, lemmaIdCache);
+        lastFlushMillis = System.currentTimeMillis();
+        crawlMetrics.recordIndexFlush(siteId, pagesToWrite.size(), lastFlushMillis - flushStart);
+        if (isStatusUpdateDue) {
+            lastStatusUpdateMillis = lastFlushMillis;
+        }
+        log.info("Index batch for site {} flushed: {} pages, {} postings, {} lemmas, {} pages removed in {} ms",
+                siteId, pagesToWrite.size(), postingsToWrite.size(), deltasToWrite.size(), pagesToRemoveNow.size(),
+                lastFlushMillis - flushStart);
+    }
+
+    /**
+     * Returns the lemmas of the removed pages. Duplicates of the removed pages, unless removed themselves,
+     * are released before this batch links its own duplicates and are added to releasedDuplicateIds.
+     */
+    private Set<String> writeBatch(Map<String, Integer> deltasToWrite, List<PageEntity> pagesToWrite,
+                                   List<Posting> postingsToWrite, Set<Integer> pagesToRemoveNow,
+                                   List<PageVisit> visitsToWrite, boolean isStatusUpdateDue,
+                                   List<Integer> releasedDuplicateIds) {
+        return transactionTemplate.execute(status -> {
+            Map<String, Integer> removedLemmaCounts = Map.of();
+            if (!pagesToRemoveNow.isEmpty()) {
+                removedLemmaCounts = indexBatchRepository.countLemmasByPageIds(pagesToRemoveNow);
+                removedLemmaCounts.forEach((lemma, count) -> deltasToWrite.merge(lemma, -count, Integer::sum));
+                indexBatchRepository.deletePostingsByPageIds(pagesToRemoveNow);
+                releasedDuplicateIds.addAll(indexBatchRepository.findDuplicateIds(pagesToRemoveNow));
+                releasedDuplicateIds.removeAll(pagesToRemoveNow);
+                indexBatchRepository.releaseDuplicates(releasedDuplicateIds);
+            }
+            writePages(pagesToWrite);
+            linkDuplicates(pagesToWrite);
+            indexBatchRepository.updatePageVisits(visitsToWrite);
+            resolveLemmaIds(deltasToWrite.keySet());
+            Map<Integer, Integer> deltasById = new HashMap<>();
+            deltasToWrite.forEach((lemma, delta) -> {
+                Integer lemmaId = lemmaIdCache.get(lemma);
+                if (lemmaId != null) {
+                    deltasById.merge(lemmaId, delta, Integer::sum);
+                }
+            });
+            indexBatchRepository.updateLemmaFrequencies(deltasById);
+            indexBatchRepository.insertPostings(postingsToWrite, lemmaIdCache);
+            if (isStatusUpdateDue) {
+                indexBatchRepository.updateSiteStatusTime(siteId, new Date());
+            }
+            return removedLemmaCounts.keySet();
+        });
+    }
+
+    private void writePages(List<PageEntity> pagesToWrite) {
+        List<PageEntity> newPages = new ArrayList<>();
+        List<PageEntity> changedPages = new ArrayList<>();
+        for (PageEntity page : pagesToWrite) {
+            if (page.getCanonicalPage() != null && page.getCanonicalPage().getId() != 0) {
+                page.setDuplicateOf(page.getCanonicalPage().getId());
+            }
+            (page.getId() == 0 ? newPages : changedPages).add(page);
+        }
+        indexBatchRepository.insertPages(newPages);
+        indexBatchRepository.updatePages(changedPages);
+        pageContentStore.save(pagesToWrite);
+    }
+
+    /**
+     * A duplicate points at its canonical page by id, which a new canonical page only gets on insert,
+     * possibly in this batch or in a later one.
+     */
+    private void linkDuplicates(List<PageEntity> pagesWritten) {
+        for (PageEntity page : pagesWritten) {
+            if (page.getCanonicalPage() != null && page.getDuplicateOf() == null) {
+                unlinkedDuplicates.add(page);
+            }
+        }
+        List<PageEntity> linkedDuplicates = new ArrayList<>();
+        for (Iterator<PageEntity> iterator = unlinkedDuplicates.iterator(); iterator.hasNext(); ) {
+            PageEntity duplicate = iterator.next();
+            int canonicalPageId = duplicate.getCanonicalPage().getId();
+            if (canonicalPageId != 0) {
+                duplicate.setDuplicateOf(canonicalPageId);
+                linkedDuplicates.add(duplicate);
+                iterator.remove();
+            }
+        }
+        indexBatchRepository.updateDuplicateOf(linkedDuplicates);
+    }
+
+    private void flushIfNeeded() {
+        Buffer currentBuffer = buffer;
+        boolean isFlushDue = currentBuffer.postingCount.get() >= batchSize
+                || currentBuffer.pageCount.get() >= pageBatchSize
+                || System.currentTimeMillis() - lastFlushMillis >= flushIntervalMillis;
+        if (isFlushDue && flushLock.tryLock()) {
+            try {
+                writeBuffer(swapBuffer(), false);
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private void resolveLemmaIds(Collection<String> lemmas) {
+        List<String> unknownLemmas = lemmas.stream().filter(lemma -> !lemmaIdCache.containsKey(lemma)).toList();
+        if (unknownLemmas.isEmpty()) {
+            return;
+        }
+        lemmaIdCache.putAll(indexBatchRepository.findLemmaIds(siteId, unknownLemmas));
+        List<String> newLemmas = unknownLemmas.stream().filter(lemma -> !lemmaIdCache.containsKey(lemma)).toList();
+        if (!newLemmas.isEmpty()) {
+            indexBatchRepository.insertLemmas(siteId, newLemmas);
+            lemmaIdCache.putAll(indexBatchRepository.findLemmaIds(siteId, newLemmas));
+        }
+    }
+
+    private static final class Buffer {
+
+        private Map<String, Integer> frequencyDeltas = Map.of();
+        private final Queue<PageEntity> pages = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pageCount = new AtomicInteger();
+        private final Queue<Posting> postings = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger postingCount = new AtomicInteger();
+        private final Set<Integer> pagesToRemove = ConcurrentHashMap.newKeySet();
+        private final Queue<PageVisit> visits = new ConcurrentLinkedQueue<>();
+
+        private boolean isEmpty() {
+            return pages.isEmpty() && postings.isEmpty() && pagesToRemove.isEmpty() && visits.isEmpty();
+        }
+    }
+}
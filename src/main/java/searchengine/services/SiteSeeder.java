@@ -0,0 +1,202 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import searchengine.dto.indexing.SitemapEntry;
+import searchengine.util.PropertiesHolder;
+import searchengine.util.RobotsRules;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class SiteSeeder {
+
+    private static final int OK = 200;
+    private static final long MAX_ROBOTS_BYTES = 512 * 1024;
+    private static final long MAX_SITEMAP_BYTES = 50 * 1024 * 1024;
+
+    private final PropertiesHolder properties;
+    private final HostRateLimiter hostRateLimiter;
+    private final CrawlScheduler crawlScheduler;
+    private final CrawlHttpClient crawlHttpClient;
+
+    public RobotsRules fetchRobotsRules(String siteUrl) {
+        String robotsUrl = siteUrl + "robots.txt";
+        try (CrawlHttpClient.Response response = execute(robotsUrl, MAX_ROBOTS_BYTES)) {
+            if (response.getStatusCode() != OK) {
+                log.info("No robots.txt for '{}' (HTTP {})", siteUrl, response.getStatusCode());
+                return RobotsRules.allowAll();
+            }
+            try (InputStream body = response.getBody()) {
+                return RobotsRules.parse(new String(body.readAllBytes(), StandardCharsets.UTF_8),
+                        properties.getUseragent());
+            }
+        } catch (IOException e) {
+            log.warn("Unable to read '{}': '{}'", robotsUrl, e.toString());
+            return RobotsRules.allowAll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RobotsRules.allowAll();
+        }
+    }
+
+    /**
+     * Streams the sitemaps listed in robots.txt, or /sitemap.xml when there are none,
+     * following sitemap indexes until the configured number of sitemaps or urls is read.
+     */
+    public List<SitemapEntry> readSitemaps(String siteUrl, RobotsRules robotsRules) {
+        Deque<String> sitemapsToRead = new ArrayDeque<>(robotsRules.getSitemaps());
+        if (sitemapsToRead.isEmpty()) {
+            sitemapsToRead.add(siteUrl + "sitemap.xml");
+        }
+        Set<String> sitemapsSeen = new HashSet<>(sitemapsToRead);
+        List<SitemapEntry> entries = new ArrayList<>();
+        int sitemapsRead = 0;
+        while (!sitemapsToRead.isEmpty()
+                && !crawlScheduler.isCancelled()
+                && sitemapsRead < properties.getMaxSitemaps()
+                && entries.size() < properties.getMaxSitemapUrls()) {
+            String sitemapUrl = sitemapsToRead.poll();
+            sitemapsRead++;
+            try {
+                for (String nestedSitemap : readSitemap(sitemapUrl, entries)) {
+                    if (sitemapsSeen.add(nestedSitemap)) {
+                        sitemapsToRead.add(nestedSitemap);
+                    }
+                }
+            } catch (IOException | XMLStreamException e) {
+                log.warn("Unable to read sitemap '{}': '{}'", sitemapUrl, e.toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        log.info("Sitemaps of '{}': {} read, {} urls found", siteUrl, sitemapsRead, entries.size());
+        return entries;
+    }
+
+    private List<String> readSitemap(String sitemapUrl, List<SitemapEntry> entries)
+            throws IOException, XMLStreamException, InterruptedException {
+        List<String> nestedSitemaps = new ArrayList<>();
+        try (CrawlHttpClient.Response response = execute(sitemapUrl, MAX_SITEMAP_BYTES)) {
+            if (response.getStatusCode() != OK) {
+                log.info("Sitemap '{}' not available (HTTP {})", sitemapUrl, response.getStatusCode());
+                return List.of();
+            }
+            InputStream body = openBody(response);
+            XMLStreamReader reader = newXmlInputFactory().createXMLStreamReader(body);
+            try {
+                readSitemapElements(reader, entries, nestedSitemaps);
+            } finally {
+                reader.close();
+                body.close();
+            }
+        }
+        return nestedSitemaps;
+    }
+
+    private void readSitemapElements(XMLStreamReader reader, List<SitemapEntry> entries, List<String> nestedSitemaps)
+            throws XMLStreamException {
+        String loc = null;
+        String lastModified = null;
+        while (reader.hasNext() && entries.size() < properties.getMaxSitemapUrls()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "url", "sitemap" -> {
+                        loc = null;
+                        lastModified = null;
+                    }
+                    case "loc" -> loc = reader.getElementText().trim();
+                    case "lastmod" -> lastModified = reader.getElementText().trim();
+                    default -> {
+                        // image, video and news extensions are not needed
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && loc != null) {
+                if (reader.getLocalName().equals("url")) {
+                    entries.add(new SitemapEntry(loc, parseLastModified(lastModified)));
+                } else if (reader.getLocalName().equals("sitemap")) {
+                    nestedSitemaps.add(loc);
+                }
+            }
+        }
+    }
+
+    private CrawlHttpClient.Response execute(String url, long maxBodyBytes) throws IOException, InterruptedException {
+        hostRateLimiter.acquire(url);
+        long requestStart = System.currentTimeMillis();
+        CrawlHttpClient.Response response = null;
+        boolean isTimedOut = false;
+        try {
+            crawlScheduler.beginFetch();
+            try {
+                response = crawlHttpClient.get(url, Map.of(), false, maxBodyBytes);
+            } finally {
+                crawlScheduler.endFetch();
+            }
+        } catch (SocketTimeoutException | HttpTimeoutException timeoutException) {
+            isTimedOut = true;
+            throw timeoutException;
+        } finally {
+            if (response != null) {
+                hostRateLimiter.release(url, System.currentTimeMillis() - requestStart, response.getStatusCode());
+            } else if (isTimedOut) {
+                hostRateLimiter.releaseTimedOut(url);
+            } else {
+                hostRateLimiter.releaseFailed(url);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * A .xml.gz sitemap is served gzipped without a Content-Encoding header, so it is recognised by its magic bytes.
+     */
+    private InputStream openBody(CrawlHttpClient.Response response) throws IOException {
+        InputStream body = new BufferedInputStream(response.getBody());
+        body.mark(2);
+        boolean isGzipped = body.read() == 0x1f && body.read() == 0x8b;
+        body.reset();
+        return isGzipped ? new GZIPInputStream(body) : body;
+    }
+
+    private XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private Instant parseLastModified(String lastModified) {
+        if (lastModified == null || lastModified.isEmpty()) {
+            return null;
+        }
+        try {
+            return lastModified.length() == 10
+                    ? LocalDate.parse(lastModified).atStartOfDay(ZoneOffset.UTC).toInstant()
+                    : OffsetDateTime.parse(lastModified).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.dto.indexing.Posting;
+import searchengine.model.LemmaEntity;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.repository.IndexBatchRepository;
+import searchengine.services.interfaces.SearchIndex;
+
+import java.util.*;
+
+/**
+ * Evaluates queries in the database, for installations that cannot keep the postings in memory.
+ * Every lookup is a single statement, whatever the number of lemmas or matching pages.
+ */
+@Component
+@ConditionalOnProperty(name = "search.index", havingValue = "database")
+@RequiredArgsConstructor
+public class SqlSearchIndex implements SearchIndex {
+
+    private final IndexBatchRepository indexBatchRepository;
+
+    @Override
+    public List<LemmaEntity> findLemmas(Collection<String> lemmas, Collection<SiteEntity> sites) {
+        Map<Integer, SiteEntity> sitesById = new HashMap<>();
+        sites.forEach(site -> sitesById.put(site.getId(), site));
+        return indexBatchRepository.findLemmas(lemmas, sitesById);
+    }
+
+    @Override
+    public int getPageCount(int siteId) {
+        return indexBatchRepository.countCanonicalPages(siteId);
+    }
+
+    @Override
+    public Map<Integer, Float> findPages(Collection<LemmaEntity> lemmas, Set<Integer> skippedSiteIds) {
+        Set<String> requiredLemmas = new HashSet<>();
+        List<Integer> lemmaIds = new ArrayList<>();
+        for (LemmaEntity lemma : lemmas) {
+            requiredLemmas.add(lemma.getLemma());
+            if (!skippedSiteIds.contains(lemma.getSite().getId())) {
+                lemmaIds.add(lemma.getId());
+            }
+        }
+        return indexBatchRepository.findPagesWithAllLemmas(lemmaIds, requiredLemmas.size());
+    }
+
+    @Override
+    public void apply(int siteId, Set<Integer> removedPageIds, Collection<String> removedPageLemmas,
+                      Collection<PageEntity> writtenPages, Collection<Posting> postings, Map<String, Integer> lemmaIds) {
+        // the batch is already in the tables this index reads
+    }
+
+    @Override
+    public void removeSite(int siteId) {
+        // the site's rows are deleted with it
+    }
+}
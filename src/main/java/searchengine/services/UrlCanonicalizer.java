@@ -0,0 +1,175 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.util.PropertiesHolder;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Single spelling of every crawled url, so that a page is fetched and stored once.
+ * Scheme and host are lower-cased, "www." and default ports are dropped, dot segments and repeated slashes
+ * are removed and percent-encoding is normalized. Directory paths end with a slash, file paths do not;
+ * a path followed by a query keeps its trailing slash, or lack of it, as linked.
+ * Tracking parameters and the fragment are dropped, the remaining query parameters are sorted.
+ */
+@Component
+public class UrlCanonicalizer {
+
+    private static final String UNRESERVED = "-._~";
+    private static final String PATH_CHARS = UNRESERVED + "!$&'()*+,;=:@/";
+    private static final String QUERY_CHARS = UNRESERVED + "!$'()*+,;:@/?";
+    private static final Pattern SESSION_ID_PATH_PARAMETER = Pattern.compile("(?i);jsessionid=[^/]*");
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final Set<String> trackingParameters = new HashSet<>();
+    private final List<String> trackingParameterPrefixes = new ArrayList<>();
+
+    public UrlCanonicalizer(PropertiesHolder properties) {
+        for (String parameter : properties.getTrackingParameters().split(",")) {
+            String name = parameter.trim().toLowerCase(Locale.ROOT);
+            if (name.endsWith("*")) {
+                trackingParameterPrefixes.add(name.substring(0, name.length() - 1));
+            } else if (!name.isEmpty()) {
+                trackingParameters.add(name);
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical form of an absolute url, or null when it is not an http(s) url.
+     */
+    public String canonicalize(String absoluteUrl) {
+        if (absoluteUrl == null) {
+            return null;
+        }
+        URL url;
+        try {
+            url = new URL(absoluteUrl.replace("\u00A0", "").trim());
+        } catch (MalformedURLException e) {
+            return null;
+        }
+        String scheme = url.getProtocol().toLowerCase(Locale.ROOT);
+        String host = url.getHost().toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https") || host.isEmpty() || url.getUserInfo() != null) {
+            return null;
+        }
+        host = host.endsWith(".") ? host.substring(0, host.length() - 1) : host;
+        host = host.startsWith("www.") ? host.substring(4) : host;
+        int port = url.getPort();
+        boolean isDefaultPort = port == -1 || port == url.getDefaultPort();
+
+        StringBuilder canonicalUrl = new StringBuilder(scheme).append("://").append(host);
+        if (!isDefaultPort) {
+            canonicalUrl.append(':').append(port);
+        }
+        String query = canonicalizeQuery(url.getQuery());
+        canonicalUrl.append(canonicalizePath(url.getPath(), !query.isEmpty()));
+        if (!query.isEmpty()) {
+            canonicalUrl.append('?').append(query);
+        }
+        return canonicalUrl.toString();
+    }
+
+    private String canonicalizePath(String rawPath, boolean hasQuery) {
+        String path = SESSION_ID_PATH_PARAMETER.matcher(rawPath).replaceAll("");
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                segments.pollLast();
+            } else {
+                segments.addLast(normalizeEncoding(segment, PATH_CHARS));
+            }
+        }
+        if (segments.isEmpty()) {
+            return "/";
+        }
+        String canonicalPath = "/" + String.join("/", segments);
+        boolean isDirectory = hasQuery ? path.endsWith("/") : !segments.peekLast().contains(".");
+        return isDirectory ? canonicalPath + "/" : canonicalPath;
+    }
+
+    private String canonicalizeQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int equals = parameter.indexOf('=');
+            String name = normalizeEncoding(equals < 0 ? parameter : parameter.substring(0, equals), QUERY_CHARS);
+            if (isTrackingParameter(name)) {
+                continue;
+            }
+            parameters.add(equals < 0
+                    ? name
+                    : name + "=" + normalizeEncoding(parameter.substring(equals + 1), QUERY_CHARS));
+        }
+        Collections.sort(parameters);
+        return String.join("&", parameters);
+    }
+
+    private boolean isTrackingParameter(String name) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        if (trackingParameters.contains(lowerCaseName)) {
+            return true;
+        }
+        for (String prefix : trackingParameterPrefixes) {
+            if (lowerCaseName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes escaped unreserved characters, upper-cases the remaining escapes
+     * and escapes the UTF-8 bytes of every character that is not allowed as is.
+     */
+    private String normalizeEncoding(String component, String allowedChars) {
+        StringBuilder normalized = new StringBuilder(component.length());
+        int i = 0;
+        while (i < component.length()) {
+            char c = component.charAt(i);
+            if (c == '%' && isHex(component, i + 1) && isHex(component, i + 2)) {
+                int value = Integer.parseInt(component.substring(i + 1, i + 3), 16);
+                if (isUnreserved((char) value)) {
+                    normalized.append((char) value);
+                } else {
+                    appendEscaped(normalized, value);
+                }
+                i += 3;
+            } else if (c < 0x80 && (isUnreserved(c) || allowedChars.indexOf(c) >= 0)) {
+                normalized.append(c);
+                i++;
+            } else {
+                int codePoint = component.codePointAt(i);
+                for (byte b : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+                    appendEscaped(normalized, b & 0xFF);
+                }
+                i += Character.charCount(codePoint);
+            }
+        }
+        return normalized.toString();
+    }
+
+    private boolean isHex(String component, int index) {
+        return index < component.length() && Character.digit(component.charAt(index), 16) >= 0;
+    }
+
+    private boolean isUnreserved(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || UNRESERVED.indexOf(c) >= 0;
+    }
+
+    private void appendEscaped(StringBuilder builder, int value) {
+        builder.append('%').append(HEX_DIGITS[value >> 4]).append(HEX_DIGITS[value & 0xF]);
+    }
+}
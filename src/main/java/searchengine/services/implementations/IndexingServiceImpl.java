@@ -3,37 +3,64 @@ package searchengine.services.implementations;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
-import org.jsoup.Connection;
 import org.jsoup.nodes.Document;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
 import searchengine.dto.ApiResponse;
+import searchengine.dto.indexing.FetchedPage;
+import searchengine.dto.indexing.LemmaCount;
+import searchengine.dto.indexing.LemmaRank;
+import searchengine.dto.indexing.PageSnapshot;
+import searchengine.dto.indexing.SitemapEntry;
 import searchengine.exceptions.SiteException;
 import searchengine.model.*;
-import searchengine.repository.IndexRepository;
+import searchengine.repository.IndexBatchRepository;
 import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageContentStore;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.services.CrawlFrontier;
+import searchengine.services.CrawlMetrics;
+import searchengine.services.CrawlPipeline;
+import searchengine.services.CrawlScheduler;
+import searchengine.services.FrontierJournal;
+import searchengine.services.HostRateLimiter;
+import searchengine.services.PageFetcher;
+import searchengine.services.RevisitPolicy;
+import searchengine.services.SiteIndexWriter;
+import searchengine.services.SiteSeeder;
+import searchengine.services.UrlCanonicalizer;
 import searchengine.services.interfaces.LemmatizerService;
+import searchengine.services.interfaces.SearchIndex;
 import searchengine.services.PageCrawlerUnit;
 import searchengine.services.interfaces.IndexingService;
+import searchengine.util.BloomFilterUrlSet;
 import searchengine.util.JsoupUtil;
+import searchengine.util.PositionCodec;
 import searchengine.util.PropertiesHolder;
+import searchengine.util.RobotsRules;
+import searchengine.util.SimHash;
+import searchengine.util.SimHashIndex;
 import searchengine.util.StringUtil;
+import searchengine.util.StripedFingerprintSet;
+import searchengine.util.VisitedUrlSet;
 
 import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.cert.CertPathValidatorException;
 import java.security.cert.CertificateExpiredException;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ForkJoinPool;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @RequiredArgsConstructor
@@ -45,27 +72,77 @@ public class IndexingServiceImpl implements IndexingService {
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
+    private final IndexBatchRepository indexBatchRepository;
+    private final PageContentStore pageContentStore;
+    private final TransactionTemplate transactionTemplate;
     @Getter
     private final PropertiesHolder properties;
+    private final HostRateLimiter hostRateLimiter;
+    @Getter
+    private final PageFetcher pageFetcher;
+    private final SiteSeeder siteSeeder;
+    @Getter
+    private final CrawlPipeline crawlPipeline;
+    private final CrawlScheduler crawlScheduler;
+    @Getter
+    private final CrawlMetrics crawlMetrics;
+    private final RevisitPolicy revisitPolicy;
+    private final SearchIndex searchIndex;
+    @Getter
+    private final UrlCanonicalizer urlCanonicalizer;
+
+    private static final int DELETE_BATCH_SIZE = 1000;
+    private static final long FRONTIER_POLL_MILLIS = 1000;
 
     private volatile boolean isIndexing = false;
-    private ForkJoinPool forkJoinPool = new ForkJoinPool();
-    @Getter
-    private Set<String> webpagesPathSet;
-    private ConcurrentMap<Integer, Map<String, LemmaEntity>> lemmasMapGropedBySiteId;
-    private ConcurrentMap<Integer, Set<IndexEntity>> indexEntityMapGropedBySiteId;
+    private volatile boolean isIncremental = false;
+    private volatile boolean isResumed = false;
+    // taken by a crawl or a refresh, so that neither writes into a site the other is rebuilding
+    private final AtomicBoolean isRunning = new AtomicBoolean();
+    private ConcurrentMap<Integer, VisitedUrlSet> visitedUrlsGroupedBySiteId;
+    private ConcurrentMap<Integer, FrontierJournal> frontierJournalsGroupedBySiteId;
+    private ConcurrentMap<Integer, RobotsRules> robotsRulesGroupedBySiteId;
+    private ConcurrentMap<Integer, Set<String>> unchangedPathsGroupedBySiteId;
+    private ConcurrentMap<Integer, SiteIndexWriter> indexWritersGroupedBySiteId;
+    private ConcurrentMap<Integer, ConcurrentMap<String, PageSnapshot>> previousPagesGroupedBySiteId;
+    private ConcurrentMap<Integer, SimHashIndex<PageEntity>> fingerprintIndexesGroupedBySiteId;
     @Getter
     private ConcurrentMap<String, Status> siteStatusMap;
 
     @Override
-    public ResponseEntity<ApiResponse> startIndexing() {
+    public ResponseEntity<ApiResponse> startIndexing(boolean incremental) {
         ApiResponse apiResponse = new ApiResponse();
-        if (isIndexing) {
+        if (!isRunning.compareAndSet(false, true)) {
+            apiResponse.setResult(false);
+            apiResponse.setError("Indexing already started");
+        } else {
+            isIndexing = true;
+            isIncremental = incremental;
+            isResumed = false;
+            new Thread(() -> indexAll(sites.getSites())).start();
+            apiResponse.setResult(true);
+        }
+        return ResponseEntity.ok(apiResponse);
+    }
+
+    @Override
+    public ResponseEntity<ApiResponse> resumeIndexing() {
+        ApiResponse apiResponse = new ApiResponse();
+        if (!isRunning.compareAndSet(false, true)) {
             apiResponse.setResult(false);
             apiResponse.setError("Indexing already started");
+            return ResponseEntity.ok(apiResponse);
+        }
+        List<Site> sitesToResume = sites.getSites().stream().filter(this::isResumable).toList();
+        if (sitesToResume.isEmpty()) {
+            isRunning.set(false);
+            apiResponse.setResult(false);
+            apiResponse.setError("There is no interrupted indexing to resume");
         } else {
-            new Thread(this::indexAll).start();
+            isIndexing = true;
+            isIncremental = false;
+            isResumed = true;
+            new Thread(() -> indexAll(sitesToResume)).start();
             apiResponse.setResult(true);
         }
         return ResponseEntity.ok(apiResponse);
@@ -88,8 +165,12 @@ public class IndexingServiceImpl implements IndexingService {
     public ResponseEntity<ApiResponse> indexPage(String path) {
         ApiResponse apiResponse = new ApiResponse();
         try {
-            if (isPageBelongsToSiteSpecified(path)) {
-                new Thread(() -> indexSinglePage(path)).start();
+            String pageUrl = urlCanonicalizer.canonicalize(path);
+            if (pageUrl == null) {
+                throw new SiteException("Page url is wrong");
+            }
+            if (isPageBelongsToSiteSpecified(pageUrl)) {
+                new Thread(() -> indexSinglePage(pageUrl)).start();
                 apiResponse.setResult(true);
             } else {
                 apiResponse.setResult(false);
@@ -102,88 +183,327 @@ public class IndexingServiceImpl implements IndexingService {
         return ResponseEntity.ok(apiResponse);
     }
 
-    public float calculateLemmaRank(
-            String lemma, Map<String, Integer> titleLemmasCount, Map<String, Integer> bodyLemmasCount
-    ) {
-        return titleLemmasCount.getOrDefault(lemma, 0) * properties.getWeightTitle() +
-                bodyLemmasCount.getOrDefault(lemma, 0) * properties.getWeightBody();
+    public float calculateLemmaRank(LemmaCount lemmaCount) {
+        return lemmaCount.getTitleCount() * properties.getWeightTitle() +
+                lemmaCount.getBodyCount() * properties.getWeightBody();
     }
 
-    public void savePageContentAndSiteStatusTime(PageEntity pageEntity, String pageHtml, SiteEntity siteEntity) {
-        if (!forkJoinPool.isTerminating()
-                && !forkJoinPool.isTerminated()
-                && !siteStatusMap.get(siteEntity.getUrl()).equals(Status.FAILED)) {
-            savePageAndSite(pageEntity, pageHtml, siteEntity);
+    public boolean markPageVisited(SiteEntity siteEntity, String pageUrl) {
+        VisitedUrlSet visitedUrls = visitedUrlsGroupedBySiteId.get(siteEntity.getId());
+        if (visitedUrls == null || !visitedUrls.addIfAbsent(pageUrl)) {
+            return false;
         }
+        FrontierJournal frontierJournal = frontierJournalsGroupedBySiteId.get(siteEntity.getId());
+        if (frontierJournal != null) {
+            frontierJournal.append(pageUrl);
+        }
+        return true;
     }
 
-    public void saveSinglePageContentAndSiteStatusTime(PageEntity pageEntity, String pageHtml, SiteEntity siteEntity) {
-        savePageAndSite(pageEntity, pageHtml, siteEntity);
+    public boolean isAllowedByRobots(SiteEntity siteEntity, String pageUrl) {
+        RobotsRules robotsRules = robotsRulesGroupedBySiteId.get(siteEntity.getId());
+        return robotsRules == null || robotsRules.isAllowed(pageUrl.substring(siteEntity.getUrl().length() - 1));
     }
 
-    public void extractLemmasAndIndexFromHtml(String html, PageEntity page, SiteEntity site) {
-        List<Map<String, Integer>> groupedLemmas = getGroupedLemmas(html);
-        for (String lemma : groupedLemmas.get(2).keySet()) { // index 2 contains all lemmas
-            Map<String, LemmaEntity> stringLemmaEntityMap = lemmasMapGropedBySiteId.get(site.getId());
-            LemmaEntity lemmaEntity = stringLemmaEntityMap.get(lemma);
-            if (lemmaEntity == null) {
-                lemmaEntity = new LemmaEntity();
-                lemmaEntity.setLemma(lemma);
-                lemmaEntity.setFrequency(1);
-                lemmaEntity.setSite(site);
-                lemmasMapGropedBySiteId.get(site.getId()).put(lemma, lemmaEntity);
-            } else {
-                lemmaEntity.setFrequency(lemmaEntity.getFrequency() + 1);
-            }
+    public boolean isUnchangedSinceLastIndexing(SiteEntity siteEntity, String path) {
+        Set<String> unchangedPaths = unchangedPathsGroupedBySiteId.get(siteEntity.getId());
+        return unchangedPaths != null && unchangedPaths.contains(path);
+    }
+
+    public PageSnapshot claimPreviousPage(SiteEntity siteEntity, String path) {
+        Map<String, PageSnapshot> previousPages = previousPagesGroupedBySiteId.get(siteEntity.getId());
+        return previousPages == null ? null : previousPages.remove(path);
+    }
 
-            float lemmaRank = calculateLemmaRank(lemma, groupedLemmas.get(0), groupedLemmas.get(1)); // 0 - title lemmas, 1 - body lemmas
-            IndexEntity indexEntity = new IndexEntity(page, lemmaEntity, lemmaRank);
-            indexEntityMapGropedBySiteId.get(site.getId()).add(indexEntity);
+    /**
+     * Gives back a claimed page that turned out to be an alias of another url, so that it counts as disappeared.
+     */
+    public void releasePreviousPage(SiteEntity siteEntity, String path, PageSnapshot previousPage) {
+        Map<String, PageSnapshot> previousPages = previousPagesGroupedBySiteId.get(siteEntity.getId());
+        if (previousPages != null && previousPage != null) {
+            previousPages.put(path, previousPage);
         }
     }
 
-    public List<Map<String, Integer>> getGroupedLemmas(String html) {
-        Document htmlDocument = JsoupUtil.parse(html);
-        String title = htmlDocument.title();
-        String bodyText = htmlDocument.body().text();
+    public Document loadStoredDocument(SiteEntity siteEntity, PageSnapshot previousPage) {
+        String content = pageContentStore.load(previousPage.getId());
+        return content == null
+                ? null
+                : JsoupUtil.parse(content, StringUtil.cutSlash(siteEntity.getUrl()) + previousPage.getPath());
+    }
 
-        Map<String, Integer> titleLemmasCount = lemmatizerService.getLemmasCountMap(title);
-        Map<String, Integer> bodyLemmasCount = lemmatizerService.getLemmasCountMap(bodyText);
-        Map<String, Integer> titleAndBodyLemmasCount = Stream
-                .concat(titleLemmasCount.entrySet().stream(), bodyLemmasCount.entrySet().stream())
-                .collect(Collectors.groupingBy(Map.Entry::getKey, Collectors.summingInt(Map.Entry::getValue)));
+    public void processFetchedPage(
+            SiteEntity siteEntity, String pathToSave, FetchedPage fetchedPage, PageSnapshot previousPage
+    ) {
+        crawlPipeline.submit(CrawlPipeline.Stage.EXTRACT, siteEntity.getId(),
+                () -> extractPage(siteEntity, pathToSave, fetchedPage, previousPage));
+    }
 
-        List<Map<String, Integer>> groupedLemmasList = new ArrayList<>();
-        groupedLemmasList.add(titleLemmasCount);
-        groupedLemmasList.add(bodyLemmasCount);
-        groupedLemmasList.add(titleAndBodyLemmasCount);
-        return groupedLemmasList;
+    public Map<String, LemmaRank> getLemmaRanks(Document document) {
+        Map<String, LemmaCount> lemmaCounts = lemmatizerService.getDocumentLemmaCounts(document);
+        Map<String, LemmaRank> lemmaRanks = new HashMap<>(lemmaCounts.size() * 4 / 3 + 1);
+        lemmaCounts.forEach((lemma, lemmaCount) -> lemmaRanks.put(lemma, new LemmaRank(calculateLemmaRank(lemmaCount),
+                lemmaCount.getPositionCount() == 0
+                        ? null
+                        : PositionCodec.encode(lemmaCount.getPositions(), lemmaCount.getPositionCount()))));
+        return lemmaRanks;
     }
 
     public void indexSinglePage(String pageUrl) {
         SiteEntity siteEntity = findOrCreateNewSiteEntity(pageUrl);
-        Connection connection = JsoupUtil.getConnection(pageUrl, properties.getUseragent(), properties.getReferrer());
-        Connection.Response response = JsoupUtil.getResponse(connection);
-        Document document = JsoupUtil.getDocument(connection);
-        String pathToSave = StringUtil.getPathToSave(pageUrl, siteEntity.getUrl());
-        int httpStatusCode = response.statusCode();
-
-        PageEntity pageEntityDeleted = deleteOldPageEntity(pathToSave, siteEntity);
-        String html = "";
-        PageEntity pageEntity = new PageEntity(pathToSave, httpStatusCode, html, siteEntity);
-        if (httpStatusCode != 200) {
-            saveSinglePageContentAndSiteStatusTime(pageEntity, html, siteEntity);
-        } else {
-            html = document.outerHtml();
-            if (pageEntityDeleted != null) {
-                reduceLemmaFrequenciesByOne(html, siteEntity.getId());
-            }
-            saveSinglePageContentAndSiteStatusTime(pageEntity, html, siteEntity);
-            extractLemmasAndIndexFromHtmlOnSinglePage(html, pageEntity, siteEntity);
+        String pathToSave = StringUtil.cutProtocolAndHost(pageUrl, siteEntity.getUrl());
+        PageEntity oldPageEntity = pageRepository.findPageEntityByPathAndSite(pathToSave, siteEntity);
+        FetchedPage fetchedPage = fetchSinglePage(pageUrl, oldPageEntity);
+        SiteIndexWriter indexWriter = createIndexWriter(siteEntity.getId());
+        Date now = new Date();
+        if (fetchedPage.isNotModified()) {
+            log.info("Page '{}' not modified since last indexing", pageUrl);
+            indexWriter.addVisit(revisitPolicy.nextVisit(oldPageEntity, false, now));
+            indexWriter.flush();
+            fixSiteStatusAfterSinglePageIndexed(siteEntity);
+            return;
         }
+
+        Document document = fetchedPage.getDocument();
+        PageEntity pageEntity = createPageEntity(siteEntity, pathToSave, fetchedPage);
+        if (oldPageEntity != null) {
+            pageEntity.setId(oldPageEntity.getId());
+            indexWriter.removePages(List.of(oldPageEntity.getId()));
+        }
+        revisitPolicy.apply(oldPageEntity == null
+                ? revisitPolicy.firstVisit(0, now)
+                : revisitPolicy.nextVisit(oldPageEntity, !Objects.equals(oldPageEntity.getContentHash(),
+                pageEntity.getContentHash()), now), pageEntity);
+        Map<String, LemmaRank> lemmaRanks = document == null
+                ? Map.of()
+                : getLemmaRanks(document);
+        indexWriter.addPage(pageEntity, lemmaRanks);
+        indexWriter.flush();
+        reindexReleasedDuplicates(siteEntity, indexWriter, null);
+        lemmaRepository.deleteLemmasWithNoFrequencies(siteEntity.getId());
         fixSiteStatusAfterSinglePageIndexed(siteEntity);
     }
 
+    private void extractPage(
+            SiteEntity siteEntity, String pathToSave, FetchedPage fetchedPage, PageSnapshot previousPage
+    ) {
+        Document document = fetchedPage.getDocument();
+        PageEntity pageEntity = createPageEntity(siteEntity, pathToSave, fetchedPage);
+        if (!isChanged(pageEntity, previousPage)) {
+            recordUnchangedVisit(siteEntity, previousPage);
+            return;
+        }
+        Date now = new Date();
+        revisitPolicy.apply(previousPage == null
+                ? revisitPolicy.firstVisit(0, now)
+                : revisitPolicy.nextVisit(previousPage, true, now), pageEntity);
+        int siteId = siteEntity.getId();
+        SimHashIndex<PageEntity> fingerprintIndex = fingerprintIndexesGroupedBySiteId.get(siteId);
+        dropFingerprint(fingerprintIndex, previousPage);
+        if (document == null) {
+            crawlPipeline.submit(CrawlPipeline.Stage.PERSIST, siteId,
+                    () -> persistPage(pageEntity, siteEntity, previousPage, null));
+            return;
+        }
+        PageEntity canonicalPage = findCanonicalPage(fingerprintIndex, pageEntity, previousPage);
+        if (canonicalPage != null) {
+            log.info("Page '{}' is a near duplicate of page {}, not indexed", pathToSave,
+                    canonicalPage.getPath() == null ? canonicalPage.getId() : canonicalPage.getPath());
+            pageEntity.setCanonicalPage(canonicalPage);
+            crawlPipeline.submit(CrawlPipeline.Stage.PERSIST, siteId,
+                    () -> persistPage(pageEntity, siteEntity, previousPage, null));
+            return;
+        }
+        crawlPipeline.submit(CrawlPipeline.Stage.LEMMATIZE, siteId, () -> {
+            long lemmatizeStart = System.nanoTime();
+            Map<String, LemmaRank> lemmaRanks = getLemmaRanks(document);
+            crawlMetrics.recordLemmatization(System.nanoTime() - lemmatizeStart);
+            crawlPipeline.submit(CrawlPipeline.Stage.PERSIST, siteId,
+                    () -> persistPage(pageEntity, siteEntity, previousPage, lemmaRanks));
+        });
+    }
+
+    /**
+     * Returns an indexed page of the site whose text is within the SimHash distance of this one,
+     * or registers this page as the canonical copy of its text. The page's own earlier version is no match.
+     */
+    private PageEntity findCanonicalPage(SimHashIndex<PageEntity> fingerprintIndex, PageEntity pageEntity,
+                                         PageSnapshot previousPage) {
+        if (fingerprintIndex == null || pageEntity.getSimhash() == null) {
+            return null;
+        }
+        int ownPageId = previousPage == null ? 0 : previousPage.getId();
+        return fingerprintIndex.findOrAdd(pageEntity.getSimhash(), pageEntity,
+                candidate -> ownPageId != 0 && candidate.getId() == ownPageId);
+    }
+
+    /**
+     * A page that changed or disappeared no longer stands for its old text, nothing found later may match it.
+     */
+    private void dropFingerprint(SimHashIndex<PageEntity> fingerprintIndex, PageSnapshot previousPage) {
+        if (fingerprintIndex != null && previousPage != null && previousPage.getSimhash() != null) {
+            fingerprintIndex.remove(previousPage.getSimhash(), page -> page.getId() == previousPage.getId());
+        }
+    }
+
+    /**
+     * Indexes again, from their stored html, the pages that were near duplicates of a page that has since
+     * changed or disappeared. During a crawl they are matched against the current fingerprints of the site.
+     */
+    private void reindexReleasedDuplicates(SiteEntity siteEntity, SiteIndexWriter indexWriter,
+                                           SimHashIndex<PageEntity> fingerprintIndex) {
+        List<Integer> pageIds = indexWriter.drainReleasedDuplicates();
+        while (!pageIds.isEmpty()) {
+            log.info("Indexing again {} pages of '{}' whose canonical page changed or disappeared",
+                    pageIds.size(), siteEntity.getUrl());
+            for (PageEntity page : pageRepository.findAllById(pageIds)) {
+                reindexReleasedDuplicate(siteEntity, page, indexWriter, fingerprintIndex);
+            }
+            indexWriter.flush();
+            pageIds = indexWriter.drainReleasedDuplicates();
+        }
+    }
+
+    private void reindexReleasedDuplicate(SiteEntity siteEntity, PageEntity page, SiteIndexWriter indexWriter,
+                                          SimHashIndex<PageEntity> fingerprintIndex) {
+        String content = pageContentStore.load(page.getId());
+        if (content == null) {
+            return;
+        }
+        Document document = JsoupUtil.parse(content, StringUtil.cutSlash(siteEntity.getUrl()) + page.getPath());
+        page.setContent(content);
+        page.setContentHash(StringUtil.getContentHash(document.text()));
+        PageEntity canonicalPage = fingerprintIndex == null || page.getSimhash() == null
+                ? null
+                : fingerprintIndex.findOrAdd(page.getSimhash(), page, candidate -> candidate.getId() == page.getId());
+        page.setCanonicalPage(canonicalPage);
+        indexWriter.removePages(List.of(page.getId()));
+        indexWriter.addPage(page, canonicalPage == null ? getLemmaRanks(document) : Map.of());
+    }
+
+    public void recordUnchangedVisit(SiteEntity siteEntity, PageSnapshot previousPage) {
+        SiteIndexWriter indexWriter = indexWritersGroupedBySiteId.get(siteEntity.getId());
+        if (indexWriter != null) {
+            indexWriter.addVisit(revisitPolicy.nextVisit(previousPage, false, new Date()));
+        }
+    }
+
+    /**
+     * Refetches, for every indexed site, the pages whose estimated revisit time has come,
+     * at most budgetPerSite of them, most overdue first. Skipped while a crawl is running.
+     */
+    public void refreshPagesDueForVisit(int budgetPerSite) {
+        if (!isRunning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (Site site : sites.getSites()) {
+                SiteEntity siteEntity = siteRepository.findSiteEntityByUrl(StringUtil.getStartPage(site.getUrl()));
+                if (siteEntity == null || !siteEntity.getStatus().equals(Status.INDEXED)) {
+                    continue;
+                }
+                refreshSitePages(siteEntity, budgetPerSite);
+            }
+        } finally {
+            isRunning.set(false);
+        }
+    }
+
+    private void refreshSitePages(SiteEntity siteEntity, int budget) {
+        List<PageSnapshot> pagesDue = pageRepository.findPagesDueForVisit(
+                siteEntity.getId(), new Date(), PageRequest.of(0, budget));
+        if (pagesDue.isEmpty()) {
+            return;
+        }
+        SiteIndexWriter indexWriter = createIndexWriter(siteEntity.getId());
+        SimHashIndex<PageEntity> fingerprintIndex = properties.isDedupEnabled()
+                ? createFingerprintIndex(siteEntity, true)
+                : null;
+        int changedPages = 0;
+        for (PageSnapshot pageDue : pagesDue) {
+            try {
+                changedPages += refreshPage(siteEntity, pageDue, indexWriter, fingerprintIndex) ? 1 : 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException | SiteException e) {
+                log.warn("Refresh of page '{}' failed: '{}'", pageDue.getPath(), e.toString());
+            }
+        }
+        indexWriter.flush();
+        reindexReleasedDuplicates(siteEntity, indexWriter, fingerprintIndex);
+        lemmaRepository.deleteLemmasWithNoFrequencies(siteEntity.getId());
+        log.info("Refreshed {} pages of '{}' due for a visit, {} changed",
+                pagesDue.size(), siteEntity.getUrl(), changedPages);
+    }
+
+    private boolean refreshPage(SiteEntity siteEntity, PageSnapshot pageDue, SiteIndexWriter indexWriter,
+                                SimHashIndex<PageEntity> fingerprintIndex) throws IOException, InterruptedException {
+        String pageUrl = StringUtil.cutSlash(siteEntity.getUrl()) + pageDue.getPath();
+        FetchedPage fetchedPage = pageFetcher.fetch(pageUrl, pageDue.getEtag(), pageDue.getLastModified());
+        Date now = new Date();
+        if (fetchedPage.isNotModified()) {
+            indexWriter.addVisit(revisitPolicy.nextVisit(pageDue, false, now));
+            return false;
+        }
+        PageEntity pageEntity = createPageEntity(siteEntity, pageDue.getPath(), fetchedPage);
+        if (!isChanged(pageEntity, pageDue)) {
+            indexWriter.addVisit(revisitPolicy.nextVisit(pageDue, false, now));
+            return false;
+        }
+        pageEntity.setId(pageDue.getId());
+        revisitPolicy.apply(revisitPolicy.nextVisit(pageDue, true, now), pageEntity);
+        Document document = fetchedPage.getDocument();
+        dropFingerprint(fingerprintIndex, pageDue);
+        PageEntity canonicalPage = findCanonicalPage(fingerprintIndex, pageEntity, pageDue);
+        if (canonicalPage != null) {
+            log.info("Page '{}' is a near duplicate of page {}, not indexed", pageDue.getPath(), canonicalPage.getId());
+            pageEntity.setCanonicalPage(canonicalPage);
+        }
+        indexWriter.removePages(List.of(pageDue.getId()));
+        indexWriter.addPage(pageEntity, document == null || canonicalPage != null
+                ? Map.of()
+                : getLemmaRanks(document));
+        return true;
+    }
+
+    private PageEntity createPageEntity(SiteEntity siteEntity, String pathToSave, FetchedPage fetchedPage) {
+        Document document = fetchedPage.getDocument();
+        String html = document == null ? "" : document.outerHtml();
+        PageEntity pageEntity = new PageEntity(pathToSave, fetchedPage.getStatusCode(), html, siteEntity);
+        pageEntity.setContentHash(document == null ? null : StringUtil.getContentHash(document.text()));
+        pageEntity.setEtag(fetchedPage.getEtag());
+        pageEntity.setLastModified(fetchedPage.getLastModified());
+        if (document != null) {
+            List<String> words = SimHash.splitWords(document.body().text());
+            pageEntity.setSimhash(words.size() < properties.getDedupMinWords() ? null : SimHash.fingerprint(words));
+        }
+        return pageEntity;
+    }
+
+    private boolean isChanged(PageEntity pageEntity, PageSnapshot previousPage) {
+        return previousPage == null
+                || previousPage.getCode() != pageEntity.getCode()
+                || !Objects.equals(previousPage.getContentHash(), pageEntity.getContentHash());
+    }
+
+    private void persistPage(PageEntity pageEntity, SiteEntity siteEntity,
+                             PageSnapshot previousPage, Map<String, LemmaRank> lemmaRanks) {
+        if (crawlScheduler.isCancelled()
+                || siteStatusMap.get(siteEntity.getUrl()).equals(Status.FAILED)) {
+            return;
+        }
+        SiteIndexWriter indexWriter = indexWritersGroupedBySiteId.get(siteEntity.getId());
+        if (indexWriter == null) {
+            return;
+        }
+        if (previousPage != null) {
+            pageEntity.setId(previousPage.getId());
+            indexWriter.removePages(List.of(previousPage.getId()));
+        }
+        indexWriter.addPage(pageEntity, lemmaRanks == null ? Map.of() : lemmaRanks);
+    }
+
     private SiteEntity createSiteToHandleSinglePage(String siteHomePageToSave) {
         SiteEntity siteEntity = new SiteEntity();
         String currentSiteHomePage;
@@ -197,22 +517,30 @@ public class IndexingServiceImpl implements IndexingService {
         return siteEntity;
     }
 
-    private void indexAll() {
-        isIndexing = true;
-        forkJoinPool = new ForkJoinPool();
-        lemmasMapGropedBySiteId = new ConcurrentHashMap<>();
-        indexEntityMapGropedBySiteId = new ConcurrentHashMap<>();
-        webpagesPathSet = Collections.synchronizedSet(new HashSet<>());
+    private void indexAll(List<Site> sitesToIndex) {
+        crawlScheduler.start();
+        indexWritersGroupedBySiteId = new ConcurrentHashMap<>();
+        previousPagesGroupedBySiteId = new ConcurrentHashMap<>();
+        fingerprintIndexesGroupedBySiteId = new ConcurrentHashMap<>();
+        visitedUrlsGroupedBySiteId = new ConcurrentHashMap<>();
+        frontierJournalsGroupedBySiteId = new ConcurrentHashMap<>();
+        robotsRulesGroupedBySiteId = new ConcurrentHashMap<>();
+        unchangedPathsGroupedBySiteId = new ConcurrentHashMap<>();
         siteStatusMap = new ConcurrentHashMap<>();
-        for (Site site : sites.getSites()) {
-            Thread thread = new Thread(() -> indexSingleSite(site));
-            thread.setName(site.getName());
-            thread.start();
+        for (Site site : sitesToIndex) {
+            crawlScheduler.submitSite(site.getName(), () -> indexSingleSite(site));
         }
     }
 
     private void shutdown() {
-        forkJoinPool.shutdownNow();
+        crawlScheduler.cancelAll();
+        try {
+            if (!crawlScheduler.awaitSites()) {
+                log.warn("Some sites did not record their status before the stop timeout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private boolean isPageBelongsToSiteSpecified(String pageUrl) {
@@ -232,20 +560,61 @@ public class IndexingServiceImpl implements IndexingService {
 
     private void indexSingleSite(Site site) {
         try {
-            PageCrawlerUnit pageCrawlerUnit = initCollectionsForSiteAndCreateMainPageCrawlerUnit(site);
-            forkJoinPool.invoke(pageCrawlerUnit);
-            fillInLemmaAndIndexTables(site);
+            CrawlFrontier frontier = initCollectionsForSiteAndCreateFrontier(site);
+            awaitFrontier(frontier);
+            crawlPipeline.awaitSite(siteEntityId(site));
+            log.info("Crawl pipeline state after '{}': {}", site.getName(), crawlPipeline.getStatistics());
+            if (frontier.isTruncated()) {
+                log.info("Page budget of '{}' reached, pages not visited are kept", site.getName());
+            } else {
+                removeDisappearedPages(site);
+            }
+            flushIndexWriter(site);
             markSiteAsIndexed(site);
+            closeFrontierJournal(site, true);
             log.info("Indexing SUCCESSFULLY completed for site '{}'", site.getName());
         } catch (Exception exception) {
+            // a cancelled fetch may have interrupted this thread, the cleanup below must still reach the database
+            Thread.interrupted();
             log.warn("FAILED to complete indexing '{}' due to '{}'", site.getName(), exception);
+            crawlPipeline.cancelSite(siteEntityId(site));
+            flushIndexWriterAfterFailure(site);
+            closeFrontierJournal(site, false);
             fixSiteIndexingError(site, exception);
-            clearLemmaAndIndexCollections(site);
         } finally {
+            releaseFrontier(site);
             markIndexingCompletionIfApplicable();
         }
     }
 
+    private void awaitFrontier(CrawlFrontier frontier) throws Exception {
+        while (!frontier.await(FRONTIER_POLL_MILLIS)) {
+            if (crawlScheduler.isCancelled()) {
+                frontier.stop();
+            }
+        }
+        if (crawlScheduler.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    private void releaseFrontier(Site site) {
+        int siteEntityId = siteEntityId(site);
+        crawlScheduler.unregisterSite(siteEntityId);
+        crawlMetrics.removeFrontier(siteEntityId);
+        robotsRulesGroupedBySiteId.remove(siteEntityId);
+        unchangedPathsGroupedBySiteId.remove(siteEntityId);
+        fingerprintIndexesGroupedBySiteId.remove(siteEntityId);
+        VisitedUrlSet visitedUrls = visitedUrlsGroupedBySiteId.remove(siteEntityId);
+        if (visitedUrls != null) {
+            log.info("Crawl of '{}' visited {} unique urls", site.getName(), visitedUrls.size());
+        }
+    }
+
+    private int siteEntityId(Site site) {
+        return siteRepository.findSiteEntityByUrl(StringUtil.getStartPage(site.getUrl())).getId();
+    }
+
     private SiteEntity findOrCreateNewSiteEntity(String url) {
         String siteUrlFromPageUrl = StringUtil.getStartPage(url);
         SiteEntity siteEntity = siteRepository.findSiteEntityByUrl(siteUrlFromPageUrl);
@@ -255,67 +624,199 @@ public class IndexingServiceImpl implements IndexingService {
         return siteEntity;
     }
 
-    private void extractLemmasAndIndexFromHtmlOnSinglePage(String html, PageEntity pageEntity, SiteEntity siteEntity) {
-        List<Map<String, Integer>> groupedLemmas = getGroupedLemmas(html);
-        Set<String> allPageLemmas = groupedLemmas.get(2).keySet(); // index 2 contains all lemmas
-        List<LemmaEntity> singlePageLemmaEntityList =
-                lemmaRepository.findLemmaEntitiesByLemmaInAndSite(allPageLemmas, siteEntity);
-        Map<String, LemmaEntity> lemmaEntityMap =
-                singlePageLemmaEntityList.stream().collect(Collectors.toMap(LemmaEntity::getLemma, Function.identity()));
-
-        Set<LemmaEntity> lemmaEntities = new HashSet<>();
-        Set<IndexEntity> indexEntities = new HashSet<>();
-        for (String lemma : allPageLemmas) {
-            LemmaEntity lemmaEntity = lemmaEntityMap.get(lemma);
-            if (lemmaEntity == null) {
-                lemmaEntity = new LemmaEntity(lemma, 1, siteEntity);
-            } else {
-                int currentFrequency = lemmaEntity.getFrequency();
-                lemmaEntity.setFrequency(currentFrequency + 1);
-            }
-            lemmaEntities.add(lemmaEntity);
-
-            float lemmaRank = calculateLemmaRank(lemma, groupedLemmas.get(0), groupedLemmas.get(1)); // 0 - title lemmas, 1 - body lemmas
-            indexEntities.add(new IndexEntity(pageEntity, lemmaEntity, lemmaRank));
-        }
-        lemmaRepository.saveAll(lemmaEntities);
-        indexRepository.saveAll(indexEntities);
+    private SiteIndexWriter createIndexWriter(int siteId) {
+        return new SiteIndexWriter(siteId, indexBatchRepository, pageContentStore, transactionTemplate,
+                crawlMetrics, searchIndex, properties);
     }
 
-    private void fillInLemmaAndIndexTables(Site site) {
-        String homePage = StringUtil.getStartPage(site.getUrl());
-        int siteEntityId = siteRepository.findSiteEntityByUrl(homePage).getId();
-        Map<String, LemmaEntity> lemmaEntityMap = lemmasMapGropedBySiteId.get(siteEntityId);
-        lemmaRepository.saveAll(lemmaEntityMap.values());
-        lemmasMapGropedBySiteId.get(siteEntityId).clear();
-        indexRepository.saveAll(indexEntityMapGropedBySiteId.get(siteEntityId));
-        indexEntityMapGropedBySiteId.get(siteEntityId).clear();
+    private void flushIndexWriter(Site site) {
+        SiteEntity siteEntity = siteRepository.findSiteEntityByUrl(StringUtil.getStartPage(site.getUrl()));
+        SiteIndexWriter indexWriter = indexWritersGroupedBySiteId.remove(siteEntity.getId());
+        indexWriter.flush();
+        reindexReleasedDuplicates(siteEntity, indexWriter, fingerprintIndexesGroupedBySiteId.get(siteEntity.getId()));
+        lemmaRepository.deleteLemmasWithNoFrequencies(siteEntity.getId());
     }
 
-    private void clearLemmaAndIndexCollections(Site site) {
+    private void removeDisappearedPages(Site site) {
         String homePage = StringUtil.getStartPage(site.getUrl());
         int siteEntityId = siteRepository.findSiteEntityByUrl(homePage).getId();
-        lemmasMapGropedBySiteId.get(siteEntityId).clear();
-        indexEntityMapGropedBySiteId.get(siteEntityId).clear();
+        Map<String, PageSnapshot> previousPages = previousPagesGroupedBySiteId.remove(siteEntityId);
+        if (isResumed || previousPages == null || previousPages.isEmpty()
+                || !siteStatusMap.get(homePage).equals(Status.INDEXING)) {
+            return;
+        }
+        log.info("Removing {} pages no longer found on site '{}'", previousPages.size(), site.getName());
+        SimHashIndex<PageEntity> fingerprintIndex = fingerprintIndexesGroupedBySiteId.get(siteEntityId);
+        previousPages.values().forEach(previousPage -> dropFingerprint(fingerprintIndex, previousPage));
+        List<Integer> pageIds = previousPages.values().stream().map(PageSnapshot::getId).toList();
+        SiteIndexWriter indexWriter = indexWritersGroupedBySiteId.get(siteEntityId);
+        for (int i = 0; i < pageIds.size(); i += DELETE_BATCH_SIZE) {
+            List<Integer> pageIdsBatch = pageIds.subList(i, Math.min(i + DELETE_BATCH_SIZE, pageIds.size()));
+            indexWriter.removePages(pageIdsBatch);
+            indexWriter.flush();
+            pageRepository.deleteAllByIdInBatch(pageIdsBatch);
+        }
     }
 
-    private void reduceLemmaFrequenciesByOne(String text, int siteId) {
-        Map<String, Integer> allUniquePageLemmas = getGroupedLemmas(text).get(2); // index 2 contains all lemmas
-        log.info("Correcting lemmas frequencies: reduce by one");
-        lemmaRepository.reduceByOneLemmaFrequencies(siteId, allUniquePageLemmas.keySet());
-        lemmaRepository.deleteLemmasWithNoFrequencies(siteId);
+    private void flushIndexWriterAfterFailure(Site site) {
+        int siteEntityId = siteEntityId(site);
+        previousPagesGroupedBySiteId.remove(siteEntityId);
+        SiteIndexWriter indexWriter = indexWritersGroupedBySiteId.remove(siteEntityId);
+        if (indexWriter == null) {
+            return;
+        }
+        try {
+            indexWriter.flush();
+            lemmaRepository.deleteLemmasWithNoFrequencies(siteEntityId);
+        } catch (RuntimeException exception) {
+            log.warn("Pages crawled before the failure of '{}' were not saved: '{}'", site.getName(), exception);
+            indexWriter.discard();
+        }
     }
 
-    private PageCrawlerUnit initCollectionsForSiteAndCreateMainPageCrawlerUnit(Site siteToHandle) {
-        SiteEntity siteEntity = createAndPrepareSiteForIndexing(siteToHandle);
+    private CrawlFrontier initCollectionsForSiteAndCreateFrontier(Site siteToHandle) {
+        Instant lastIndexedAt = isIncremental ? findLastIndexedTime(siteToHandle) : null;
+        SiteEntity siteEntity = isResumed || isIncremental
+                ? prepareSiteForIncrementalIndexing(siteToHandle)
+                : createAndPrepareSiteForIndexing(siteToHandle);
         siteStatusMap.put(siteEntity.getUrl(), Status.INDEXING);
-        Map<String, LemmaEntity> stringLemmaEntityMap = new HashMap<>();
-        lemmasMapGropedBySiteId.put(siteEntity.getId(), stringLemmaEntityMap);
-        Set<IndexEntity> indexEntitySet = new HashSet<>();
-        indexEntityMapGropedBySiteId.put(siteEntity.getId(), indexEntitySet);
-        String siteHomePage = siteEntity.getUrl();
-        webpagesPathSet.add(siteHomePage);
-        return new PageCrawlerUnit(this, siteEntity, siteHomePage);
+        indexWritersGroupedBySiteId.put(siteEntity.getId(), createIndexWriter(siteEntity.getId()));
+        crawlPipeline.startSite(siteEntity.getId());
+        if (isIncremental || isResumed) {
+            loadPreviousPages(siteEntity);
+        }
+        if (properties.isDedupEnabled()) {
+            fingerprintIndexesGroupedBySiteId.put(siteEntity.getId(),
+                    createFingerprintIndex(siteEntity, isIncremental || isResumed));
+        }
+        VisitedUrlSet visitedUrls = siteToHandle.getBloomFilterCapacity() == null
+                ? new StripedFingerprintSet()
+                : new BloomFilterUrlSet(siteToHandle.getBloomFilterCapacity(),
+                properties.getBloomFilterFalsePositiveRate());
+        visitedUrlsGroupedBySiteId.put(siteEntity.getId(), visitedUrls);
+        RobotsRules robotsRules = properties.isSeedingEnabled()
+                ? siteSeeder.fetchRobotsRules(siteEntity.getUrl())
+                : RobotsRules.allowAll();
+        robotsRulesGroupedBySiteId.put(siteEntity.getId(), robotsRules);
+        hostRateLimiter.configure(siteToHandle, robotsRules.getCrawlDelaySeconds());
+        CrawlFrontier frontier = createFrontier(siteToHandle, siteEntity);
+        Path journalFile = getFrontierJournalFile(siteToHandle);
+        long checkpointInterval = properties.getJournalCheckpointIntervalMillis();
+        if (isResumed) {
+            FrontierJournal frontierJournal = FrontierJournal.resume(journalFile, checkpointInterval);
+            frontierJournalsGroupedBySiteId.put(siteEntity.getId(), frontierJournal);
+            seedFrontierFromJournal(frontier, siteEntity, frontierJournal.getJournaledUrls(), visitedUrls);
+        } else {
+            frontierJournalsGroupedBySiteId.put(siteEntity.getId(),
+                    FrontierJournal.create(journalFile, checkpointInterval));
+            String siteHomePage = siteEntity.getUrl();
+            markPageVisited(siteEntity, siteHomePage);
+            frontier.offer(siteHomePage, 0, null);
+            if (properties.isSeedingEnabled()) {
+                seedFrontierFromSitemaps(frontier, siteEntity, robotsRules, lastIndexedAt);
+            }
+        }
+        frontier.finishSeeding();
+        return frontier;
+    }
+
+    private CrawlFrontier createFrontier(Site site, SiteEntity siteEntity) {
+        int maxWorkers = site.getMaxConcurrency() == null
+                ? properties.getMaxConcurrency() : site.getMaxConcurrency();
+        CrawlFrontier frontier = new CrawlFrontier(siteEntity.getId(), site.getMaxPages(), crawlScheduler, properties,
+                siteFrontier -> crawlScheduler.startWorker(new PageCrawlerUnit(this, siteEntity, siteFrontier)));
+        crawlScheduler.registerSite(siteEntity.getId(), maxWorkers, frontier);
+        crawlMetrics.registerFrontier(siteEntity.getId(), siteEntity.getName(), frontier);
+        return frontier;
+    }
+
+    private void seedFrontierFromSitemaps(
+            CrawlFrontier frontier, SiteEntity siteEntity, RobotsRules robotsRules, Instant lastIndexedAt
+    ) {
+        Set<String> unchangedPaths = ConcurrentHashMap.newKeySet();
+        unchangedPathsGroupedBySiteId.put(siteEntity.getId(), unchangedPaths);
+        int seededUrls = 0;
+        for (SitemapEntry sitemapEntry : siteSeeder.readSitemaps(siteEntity.getUrl(), robotsRules)) {
+            String href = urlCanonicalizer.canonicalize(sitemapEntry.getUrl());
+            if (href == null || !StringUtil.isHrefValid(siteEntity.getUrl(), href, properties.getFileExtensions())
+                    || !isAllowedByRobots(siteEntity, href)) {
+                continue;
+            }
+            String path;
+            try {
+                path = StringUtil.cutProtocolAndHost(href, siteEntity.getUrl());
+            } catch (SiteException ignoredException) {
+                continue;
+            }
+            if (lastIndexedAt != null && sitemapEntry.getLastModified() != null
+                    && sitemapEntry.getLastModified().isBefore(lastIndexedAt)) {
+                unchangedPaths.add(path);
+            }
+            if (markPageVisited(siteEntity, href)) {
+                frontier.offer(href, StringUtil.getPathDepth(path), sitemapEntry.getLastModified());
+                seededUrls++;
+            }
+        }
+        log.info("Frontier of '{}' seeded with {} sitemap urls, {} unchanged since last indexing",
+                siteEntity.getUrl(), seededUrls, unchangedPaths.size());
+    }
+
+    private Instant findLastIndexedTime(Site site) {
+        SiteEntity siteEntity = siteRepository.findSiteEntityByUrl(StringUtil.getStartPage(site.getUrl()));
+        return siteEntity == null || !siteEntity.getStatus().equals(Status.INDEXED)
+                ? null
+                : siteEntity.getStatusTime().toInstant();
+    }
+
+    private void seedFrontierFromJournal(
+            CrawlFrontier frontier, SiteEntity siteEntity, List<String> journaledUrls, VisitedUrlSet visitedUrls
+    ) {
+        Set<String> savedPaths = previousPagesGroupedBySiteId.get(siteEntity.getId()).keySet();
+        int urlsLeft = 0;
+        for (String pageUrl : journaledUrls) {
+            if (!visitedUrls.addIfAbsent(pageUrl)) {
+                continue;
+            }
+            try {
+                String path = StringUtil.cutProtocolAndHost(pageUrl, siteEntity.getUrl());
+                if (!savedPaths.contains(path)) {
+                    frontier.offer(pageUrl, StringUtil.getPathDepth(path), null);
+                    urlsLeft++;
+                }
+            } catch (SiteException ignoredException) {
+                log.warn("Journaled url '{}' skipped: '{}'", pageUrl, ignoredException.getMessage());
+            }
+        }
+        log.info("Resuming crawl of '{}': {} urls journaled, {} pages saved, {} left to fetch",
+                siteEntity.getUrl(), journaledUrls.size(), savedPaths.size(), urlsLeft);
+    }
+
+    private boolean isResumable(Site site) {
+        SiteEntity siteEntity = siteRepository.findSiteEntityByUrl(StringUtil.getStartPage(site.getUrl()));
+        return siteEntity != null
+                && !siteEntity.getStatus().equals(Status.INDEXED)
+                && Files.exists(getFrontierJournalFile(site));
+    }
+
+    /**
+     * Named after the whole configured url, so that sites on one host with different ports or paths
+     * keep separate journals.
+     */
+    private Path getFrontierJournalFile(Site site) {
+        String fileName = site.getUrl().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9.-]+", "_");
+        return Path.of(properties.getJournalDirectory(), fileName + ".journal");
+    }
+
+    private void closeFrontierJournal(Site site, boolean isCompleted) {
+        FrontierJournal frontierJournal = frontierJournalsGroupedBySiteId.remove(siteEntityId(site));
+        if (frontierJournal == null) {
+            return;
+        }
+        if (isCompleted) {
+            frontierJournal.delete();
+        } else {
+            frontierJournal.close();
+        }
     }
 
     private void markIndexingCompletionIfApplicable() {
@@ -325,27 +826,27 @@ public class IndexingServiceImpl implements IndexingService {
                 return;
             }
         }
+        crawlScheduler.finish();
         isIndexing = false;
+        isRunning.set(false);
     }
 
-    private void savePageAndSite(PageEntity pageEntity, String pageHtml, SiteEntity siteEntity) {
-        pageEntity.setContent(pageHtml);
-        pageRepository.save(pageEntity);
-        siteEntity.setStatusTime(new Date());
-        siteRepository.save(siteEntity);
-    }
-
-    private PageEntity deleteOldPageEntity(String path, SiteEntity siteEntity) {
-        PageEntity pageEntityToDelete = pageRepository.findPageEntityByPathAndSite(path, siteEntity);
-        if (pageEntityToDelete == null) {
-            return null;
+    private FetchedPage fetchSinglePage(String pageUrl, PageEntity oldPageEntity) {
+        try {
+            return oldPageEntity == null
+                    ? pageFetcher.fetch(pageUrl)
+                    : pageFetcher.fetch(pageUrl, oldPageEntity.getEtag(), oldPageEntity.getLastModified());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SiteException("Interrupted while fetching page");
+        } catch (IOException e) {
+            throw new SiteException("Connection request failed while fetching page");
         }
-        pageRepository.delete(pageEntityToDelete);
-        return pageEntityToDelete;
     }
 
     private void fixSiteStatusAfterSinglePageIndexed(SiteEntity site) {
         site.setStatus(Status.INDEXED);
+        site.setStatusTime(new Date());
         siteRepository.save(site);
     }
 
@@ -357,6 +858,7 @@ public class IndexingServiceImpl implements IndexingService {
             oldSiteEntity.setStatusTime(new Date());
             siteRepository.save(oldSiteEntity);
             siteRepository.deleteSiteEntityByUrl(homePage);
+            searchIndex.removeSite(oldSiteEntity.getId());
         }
         SiteEntity siteEntity = new SiteEntity();
         siteEntity.setStatus(Status.INDEXING);
@@ -366,6 +868,43 @@ public class IndexingServiceImpl implements IndexingService {
         return siteRepository.save(siteEntity);
     }
 
+    private SiteEntity prepareSiteForIncrementalIndexing(Site site) {
+        String homePage = StringUtil.getStartPage(site.getUrl());
+        SiteEntity siteEntity = siteRepository.findSiteEntityByUrl(homePage);
+        if (siteEntity == null) {
+            return createAndPrepareSiteForIndexing(site);
+        }
+        siteEntity.setStatus(Status.INDEXING);
+        siteEntity.setStatusTime(new Date());
+        siteEntity.setLastError(null);
+        siteEntity.setName(site.getName());
+        return siteRepository.save(siteEntity);
+    }
+
+    private void loadPreviousPages(SiteEntity siteEntity) {
+        ConcurrentMap<String, PageSnapshot> previousPages = new ConcurrentHashMap<>();
+        for (PageSnapshot pageSnapshot : pageRepository.findPageSnapshotsBySite(siteEntity)) {
+            previousPages.put(pageSnapshot.getPath(), pageSnapshot);
+        }
+        previousPagesGroupedBySiteId.put(siteEntity.getId(), previousPages);
+        log.info("Incremental indexing of '{}': {} pages loaded", siteEntity.getUrl(), previousPages.size());
+    }
+
+    /**
+     * A new index, holding the fingerprints of the pages already indexed in full if isPreloaded.
+     */
+    private SimHashIndex<PageEntity> createFingerprintIndex(SiteEntity siteEntity, boolean isPreloaded) {
+        SimHashIndex<PageEntity> fingerprintIndex = new SimHashIndex<>(properties.getDedupMaxDistance());
+        if (isPreloaded) {
+            indexBatchRepository.findCanonicalFingerprints(siteEntity.getId()).forEach((pageId, fingerprint) -> {
+                PageEntity canonicalPage = new PageEntity();
+                canonicalPage.setId(pageId);
+                fingerprintIndex.add(fingerprint, canonicalPage);
+            });
+        }
+        return fingerprintIndex;
+    }
+
     private void markSiteAsIndexed(Site site) {
         String homePage = StringUtil.getStartPage(site.getUrl());
         SiteEntity siteEntity = siteRepository.findSiteEntityByUrl(homePage);
@@ -1,62 +1,128 @@
 package searchengine.services.implementations;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.lucene.morphology.LuceneMorphology;
+import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
+import searchengine.dto.indexing.LemmaCount;
 import searchengine.services.interfaces.LemmatizerService;
+import searchengine.util.CyrillicTokenizer;
+import searchengine.util.PropertiesHolder;
+import searchengine.util.StripedLruCache;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
+/**
+ * Texts are tokenized in a single pass, and morphology lookups are cached per word,
+ * since most words of a text are repeats of a small vocabulary.
+ */
 @Service
-@RequiredArgsConstructor
 public class LemmatizerServiceImpl implements LemmatizerService {
 
-    private static final String SERVICE_PARTS_OF_SPEECH = ".*(ПРЕДЛ|СОЮЗ|ЧАСТ|МЕЖД)$";
-    private static final Pattern PATTERN = Pattern.compile("ё", Pattern.CANON_EQ);
+    private static final Pattern SERVICE_PARTS_OF_SPEECH = Pattern.compile(".*(ПРЕДЛ|СОЮЗ|ЧАСТ|МЕЖД)$");
 
     private final LuceneMorphology ruLuceneMorphology;
+    private final StripedLruCache<String, WordForms> wordFormsCache;
+    private final int maxPositions;
+
+    public LemmatizerServiceImpl(LuceneMorphology ruLuceneMorphology, PropertiesHolder properties,
+                                 MeterRegistry meterRegistry) {
+        this.ruLuceneMorphology = ruLuceneMorphology;
+        this.wordFormsCache = new StripedLruCache<>(properties.getLemmaCacheSize());
+        this.maxPositions = properties.getIndexMaxPositions();
+        FunctionCounter.builder("lemmatizer.cache.hits", wordFormsCache, StripedLruCache::getHits)
+                .description("Words whose morphology was found in the cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("lemmatizer.cache.misses", wordFormsCache, StripedLruCache::getMisses)
+                .description("Words looked up in the morphology dictionary")
+                .register(meterRegistry);
+        Gauge.builder("lemmatizer.cache.size", wordFormsCache, StripedLruCache::size)
+                .description("Words held in the morphology cache")
+                .register(meterRegistry);
+    }
 
     @Override
     public Map<String, Integer> getLemmasCountMap(String text) {
         Map<String, Integer> lemmasCountMap = new HashMap<>();
-        for (String word : getWordsWithoutServicePartsOfSpeech(text)) {
-            for (String wordNormalForm : ruLuceneMorphology.getNormalForms(word)) {
-                wordNormalForm = PATTERN.matcher(wordNormalForm).replaceAll("е");
-                lemmasCountMap.put(wordNormalForm, lemmasCountMap.getOrDefault(wordNormalForm, 0) + 1);
+        CyrillicTokenizer.tokenize(text, (word, wordIndex, wordOffset) -> {
+            WordForms wordForms = getWordForms(word);
+            if (!wordForms.isServiceWord) {
+                for (String lemma : wordForms.lemmas) {
+                    lemmasCountMap.merge(lemma, 1, Integer::sum);
+                }
             }
-        }
+        });
         return lemmasCountMap;
     }
 
     @Override
-    public List<String> getLemmatizedList(List<String> list) {
-        return list
-                .stream()
-                .map(s -> s = s.matches("[^(.+)?[а-яёА-ЯЁ]+(.+)?]") ? "в" : s)
-                .map(String::toLowerCase)
-                .map(this::getCyrillicWord)
-                .map(s -> s = s.length() < 1 ? "в" : s)
-                .map(s -> s = ruLuceneMorphology.getMorphInfo(s).toString().matches(SERVICE_PARTS_OF_SPEECH) ?
-                        "" : ruLuceneMorphology.getNormalForms(s).get(0))
-                .toList();
+    public Map<String, LemmaCount> getDocumentLemmaCounts(Document document) {
+        Map<String, LemmaCount> lemmaCounts = new HashMap<>();
+        countLemmas(document.title(), true, lemmaCounts);
+        if (document.body() != null) {
+            countLemmas(document.body().text(), false, lemmaCounts);
+        }
+        return lemmaCounts;
+    }
+
+    @Override
+    public List<Integer> findWordPositions(String text, Set<String> lemmas) {
+        List<Integer> wordPositions = new ArrayList<>();
+        CyrillicTokenizer.tokenize(text, (word, wordIndex, wordOffset) -> {
+            if (!wordPositions.isEmpty() && wordPositions.get(wordPositions.size() - 1) == wordIndex) {
+                return;
+            }
+            WordForms wordForms = getWordForms(word);
+            if (!wordForms.isServiceWord && wordForms.lemmas.stream().anyMatch(lemmas::contains)) {
+                wordPositions.add(wordIndex);
+            }
+        });
+        return wordPositions;
     }
 
-    private List<String> getWordsWithoutServicePartsOfSpeech(String text) {
-        return Arrays.stream((text).split("[^а-яёА-ЯЁ]+"))
-                .filter(word -> word.length() != 0)
-                .map(String::toLowerCase)
-                .filter(word -> ruLuceneMorphology
-                        .getMorphInfo(word)
-                        .stream()
-                        .noneMatch(baseFormWord -> baseFormWord.matches(SERVICE_PARTS_OF_SPEECH)))
+    private void countLemmas(String text, boolean isTitle, Map<String, LemmaCount> lemmaCounts) {
+        CyrillicTokenizer.tokenize(text, (word, wordIndex, wordOffset) -> {
+            WordForms wordForms = getWordForms(word);
+            if (!wordForms.isServiceWord) {
+                for (String lemma : wordForms.lemmas) {
+                    LemmaCount lemmaCount = lemmaCounts.computeIfAbsent(lemma, key -> new LemmaCount());
+                    lemmaCount.increment(isTitle);
+                    if (!isTitle) {
+                        lemmaCount.addPosition(wordIndex, wordOffset, maxPositions);
+                    }
+                }
+            }
+        });
+    }
+
+    private WordForms getWordForms(String word) {
+        return wordFormsCache.get(word, this::lookUpWordForms);
+    }
+
+    private WordForms lookUpWordForms(String word) {
+        boolean isServiceWord = ruLuceneMorphology.getMorphInfo(word).stream()
+                .anyMatch(morphInfo -> SERVICE_PARTS_OF_SPEECH.matcher(morphInfo).matches());
+        List<String> lemmas = ruLuceneMorphology.getNormalForms(word).stream()
+                .map(normalForm -> normalForm.replace('ё', 'е'))
                 .toList();
+        return new WordForms(lemmas, isServiceWord);
     }
 
-    private String getCyrillicWord(String word) {
-        return word.replaceAll("[^а-яё]", "");
+    private static final class WordForms {
+
+        private final List<String> lemmas;
+        private final boolean isServiceWord;
+
+        private WordForms(List<String> lemmas, boolean isServiceWord) {
+            this.lemmas = lemmas;
+            this.isServiceWord = isServiceWord;
+        }
     }
 }
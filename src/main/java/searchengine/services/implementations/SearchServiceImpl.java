@@ -13,12 +13,14 @@ import searchengine.model.LemmaEntity;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
 import searchengine.model.Status;
-import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
+import searchengine.repository.IndexBatchRepository;
+import searchengine.repository.PageContentStore;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 import searchengine.services.interfaces.LemmatizerService;
+import searchengine.services.interfaces.SearchIndex;
 import searchengine.services.interfaces.SearchService;
+import searchengine.util.PositionCodec;
 import searchengine.util.PropertiesHolder;
 import searchengine.util.StringUtil;
 
@@ -33,8 +35,9 @@ public class SearchServiceImpl implements SearchService {
     private final LemmatizerService lemmatizerService;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
+    private final PageContentStore pageContentStore;
+    private final IndexBatchRepository indexBatchRepository;
+    private final SearchIndex searchIndex;
     private final PropertiesHolder properties;
 
     @Override
@@ -64,81 +67,82 @@ public class SearchServiceImpl implements SearchService {
         return siteRepository.existsByStatus(Status.INDEXING) || siteRepository.existsByStatus(Status.FAILED);
     }
 
+    /**
+     * Scores every matching page, but loads and renders only the pages of the requested window.
+     * A page whose snippet turns out empty is left out of the window and of the count.
+     */
     private SearchResultResponse getSearchResult(String query, String site, int offset, int limit) {
-        site = site + "/";
-        SearchResultResponse searchResult = getSearchResult(query, site);
-
-        int noOfPages = searchResult.getCount();
-        int dataArrayEndIndex = Math.min(noOfPages, offset + limit);
-        int dataValueSize;
-        if (noOfPages < offset) {
-            dataValueSize = 0;
-        } else {
-            dataValueSize = dataArrayEndIndex - offset;
-        }
-        List<SearchResultPage> allPages = searchResult.getData();
-        List<SearchResultPage> limitedPages = new ArrayList<>();
-        for (int i = offset; i < offset + dataValueSize; i++) {
-            limitedPages.add(allPages.get(i));
-        }
-        searchResult.setData(limitedPages);
-        return searchResult;
-    }
-
-    private SearchResultResponse getSearchResult(String query, String siteUrl) {
         SearchResultResponse searchResultResponse = new SearchResultResponse();
         searchResultResponse.setResult(true);
 
         List<SiteEntity> siteEntityList = siteRepository.findAll();
-        SiteEntity searchingSite = getSearchingSiteEntity(siteEntityList, siteUrl);
-        List<LemmaEntity> sortedLemmasFromQuery = getSortedByFrequencyAscLemmasQueryList(query, searchingSite);
+        SiteEntity searchingSite = getSearchingSiteEntity(siteEntityList, site + "/");
+        List<LemmaEntity> sortedLemmasFromQuery =
+                getSortedByFrequencyAscLemmasQueryList(query, searchingSite, siteEntityList);
         List<LemmaEntity> frequentLemmas = getFrequentLemmas(siteEntityList, sortedLemmasFromQuery);
         if (sortedLemmasFromQuery.isEmpty() || sortedLemmasFromQuery.size() == frequentLemmas.size()) {
             return returnEmptySearchResult(searchResultResponse);
         }
 
-        Set<Integer> pagesIdSet = getAllPagesId(sortedLemmasFromQuery);
-        List<PageEntity> pagesFound = pageRepository.findAllById(pagesIdSet);
-        if (searchingSite == null) {
-            pagesFound = filterPages(pagesFound, sortedLemmasFromQuery, frequentLemmas);
-        }
-        if (pagesFound.isEmpty()) {
+        Set<Integer> skippedSiteIds = searchingSite == null
+                ? getSitesWithOnlyFrequentLemmas(sortedLemmasFromQuery, frequentLemmas)
+                : Set.of();
+        Map<Integer, Float> relevanceByPageId = searchIndex.findPages(sortedLemmasFromQuery, skippedSiteIds);
+        if (relevanceByPageId.isEmpty()) {
             return returnEmptySearchResult(searchResultResponse);
         }
 
-        List<SearchResultPage> pagesFoundSorted = getSortedPages(pagesFound, sortedLemmasFromQuery);
-        return putPagesIntoSearchResultResponse(searchResultResponse, pagesFoundSorted);
+        List<Integer> topPageIds = selectTopPages(relevanceByPageId, offset + limit);
+        List<Integer> requestedPageIds = offset < topPageIds.size()
+                ? topPageIds.subList(offset, topPageIds.size())
+                : List.of();
+        float maxRelevance = Collections.max(relevanceByPageId.values());
+        List<SearchResultPage> requestedPages =
+                createSearchResultPages(requestedPageIds, sortedLemmasFromQuery, relevanceByPageId, maxRelevance);
+        searchResultResponse.setCount(relevanceByPageId.size() - (requestedPageIds.size() - requestedPages.size()));
+        searchResultResponse.setData(requestedPages);
+        return searchResultResponse;
     }
 
-    private SearchResultResponse putPagesIntoSearchResultResponse(
-            SearchResultResponse response, List<SearchResultPage> pageList
-    ) {
-        response.setCount(pageList.size());
-        response.setData(pageList);
-        return response;
+    private Set<Integer> getSitesWithOnlyFrequentLemmas(List<LemmaEntity> allLemmas, List<LemmaEntity> frequentLemmas) {
+        Map<Integer, Long> lemmaCountBySiteId = allLemmas.stream()
+                .collect(Collectors.groupingBy(lemma -> lemma.getSite().getId(), Collectors.counting()));
+        Map<Integer, Long> frequentLemmaCountBySiteId = frequentLemmas.stream()
+                .collect(Collectors.groupingBy(lemma -> lemma.getSite().getId(), Collectors.counting()));
+        Set<Integer> siteIds = new HashSet<>();
+        lemmaCountBySiteId.forEach((siteId, count) -> {
+            if (count.equals(frequentLemmaCountBySiteId.get(siteId))) {
+                siteIds.add(siteId);
+            }
+        });
+        return siteIds;
     }
 
-    private List<PageEntity> filterPages(
-            List<PageEntity> pages, List<LemmaEntity> allLemmas, List<LemmaEntity> frequentLemmas
-    ) {
-        List<PageEntity> filteredPages = pages;
-        Map<SiteEntity, List<LemmaEntity>> groupedLemmas =
-                allLemmas.stream().collect(Collectors.groupingBy(LemmaEntity::getSite));
-        Map<SiteEntity, List<LemmaEntity>> groupedFrequentLemmas =
-                frequentLemmas.stream().collect(Collectors.groupingBy(LemmaEntity::getSite));
-        for (SiteEntity site : groupedLemmas.keySet()) {
-            if ((groupedLemmas.containsKey(site) && groupedFrequentLemmas.containsKey(site))
-                    && groupedLemmas.get(site).size() == groupedFrequentLemmas.get(site).size()) {
-                filteredPages = filteredPages.stream()
-                        .filter(pageEntity -> !pageEntity.getSite().equals(site)).toList();
+    /**
+     * Ids of the most relevant pages, best first, kept in a heap bounded by the number requested.
+     * Pages of equal relevance are ordered by id.
+     */
+    private List<Integer> selectTopPages(Map<Integer, Float> relevanceByPageId, int count) {
+        Comparator<Integer> byRelevance = Comparator.<Integer, Float>comparing(relevanceByPageId::get)
+                .thenComparing(Comparator.reverseOrder());
+        PriorityQueue<Integer> topPages = new PriorityQueue<>(Math.max(1, count), byRelevance);
+        for (Integer pageId : relevanceByPageId.keySet()) {
+            if (topPages.size() < count) {
+                topPages.add(pageId);
+            } else if (count > 0 && byRelevance.compare(pageId, topPages.peek()) > 0) {
+                topPages.poll();
+                topPages.add(pageId);
             }
         }
-        return filteredPages;
+        List<Integer> topPageIds = new ArrayList<>(topPages);
+        topPageIds.sort(byRelevance.reversed());
+        return topPageIds;
     }
 
     private SearchResultResponse returnEmptySearchResult(SearchResultResponse searchResult) {
         log.info("Nothing found!");
         searchResult.setCount(0);
+        searchResult.setData(List.of());
         return searchResult;
     }
 
@@ -151,37 +155,50 @@ public class SearchServiceImpl implements SearchService {
         return null;
     }
 
-    private List<SearchResultPage> getSortedPages(List<PageEntity> pages, List<LemmaEntity> lemmaList) {
-        List<SearchResultPage> searchResultPageList = new ArrayList<>();
+    private List<SearchResultPage> createSearchResultPages(
+            List<Integer> pageIds, List<LemmaEntity> lemmaList, Map<Integer, Float> relevanceByPageId,
+            float maxRelevance
+    ) {
+        if (pageIds.isEmpty()) {
+            return new ArrayList<>();
+        }
         List<Integer> lemmasIdList = lemmaList.stream().map(LemmaEntity::getId).toList();
         Set<String> lemmasStringSet = lemmaList.stream().map(LemmaEntity::getLemma).collect(Collectors.toSet());
+        Map<Integer, PageEntity> pagesById = pageRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(PageEntity::getId, pageEntity -> pageEntity));
+        Map<Integer, String> pageContentMap = pageContentStore.loadAll(pageIds);
+        Map<Integer, List<byte[]>> pagePositionsMap = indexBatchRepository.findPositions(pageIds, lemmasIdList);
 
-        for (PageEntity pageEntity : pages) {
-            SearchResultPage searchResultPage = createSearchResultPage(pageEntity, lemmasIdList, lemmasStringSet);
+        List<SearchResultPage> searchResultPageList = new ArrayList<>();
+        for (Integer pageId : pageIds) {
+            PageEntity pageEntity = pagesById.get(pageId);
+            if (pageEntity == null) {
+                continue;
+            }
+            String content = pageContentMap.getOrDefault(pageId, "");
+            List<byte[]> positions = pagePositionsMap.getOrDefault(pageId, List.of());
+            float relevance = relevanceByPageId.get(pageId) / maxRelevance;
+            SearchResultPage searchResultPage =
+                    createSearchResultPage(pageEntity, content, positions, relevance, lemmasStringSet);
             if (searchResultPage.getSnippet().isEmpty()) {
                 continue;
             }
             searchResultPageList.add(searchResultPage);
         }
-        searchResultPageList.sort(Comparator.comparing(SearchResultPage::getRelevance).reversed()
-                .thenComparing(SearchResultPage::getTitle));
-        convertAbsoluteRelevanceToRelative(searchResultPageList);
         return searchResultPageList;
     }
 
     private SearchResultPage createSearchResultPage(
-            PageEntity pageEntity, List<Integer> lemmasIdList, Set<String> lemmasStringSet
+            PageEntity pageEntity, String content, List<byte[]> positions, float relevance, Set<String> lemmasStringSet
     ) {
         SiteEntity site = pageEntity.getSite();
         String siteUrl = StringUtil.cutSlash(site.getUrl());
         String siteName = site.getName();
         String pagePath = pageEntity.getPath();
-        Document document = Jsoup.parse(pageEntity.getContent());
+        Document document = Jsoup.parse(content);
         String title = document.title();
 
-        String snippet = getSnippet(document, lemmasStringSet);
-        Float relevanceWrapped = indexRepository.getAbsRelevance(pageEntity.getId(), lemmasIdList);
-        float relevance = relevanceWrapped == null ? 0 : relevanceWrapped;
+        String snippet = getSnippet(document, lemmasStringSet, positions);
 
         SearchResultPage searchResultPage = new SearchResultPage();
         searchResultPage.setSite(siteUrl);
@@ -193,79 +210,29 @@ public class SearchServiceImpl implements SearchService {
         return searchResultPage;
     }
 
-    private Set<Integer> getAllPagesId(List<LemmaEntity> lemmasQueryList) {
-        Map<String, Integer> frequencyLemmaMap = lemmasQueryList.stream()
-                .collect(Collectors.groupingBy(LemmaEntity::getLemma, Collectors.summingInt(LemmaEntity::getFrequency)));
-
-        List<String> lemmasSortedAscList =
-                frequencyLemmaMap.entrySet().stream().sorted(Map.Entry.comparingByValue()).map(Map.Entry::getKey).toList();
-
-        Map<String, Set<Integer>> gropedLemmaIds = lemmasQueryList.stream().collect(
-                Collectors.groupingBy(LemmaEntity::getLemma, Collectors.mapping(LemmaEntity::getId, Collectors.toSet()))
-        );
-
-        return findPagesId(lemmasSortedAscList, gropedLemmaIds);
-    }
-
-    private Set<Integer> findPagesId(List<String> lemmasSorted, Map<String, Set<Integer>> gropedLemmaIdMap) {
-        String firstLemma = lemmasSorted.get(0);
-        Set<Integer> firstLemmaIdsSet = gropedLemmaIdMap.get(firstLemma);
-        Set<Integer> pagesIdResultSet = indexRepository.findPagesIdByLemmaIdIn(firstLemmaIdsSet);
-
-        String currentLemma;
-        Set<Integer> currentLemmasIdSet;
-        Set<Integer> pagesIdTempSet = new HashSet<>();
-        for (int i = 1; i < lemmasSorted.size(); i++) {
-            pagesIdTempSet.clear();
-            currentLemma = lemmasSorted.get(i);
-            currentLemmasIdSet = gropedLemmaIdMap.get(currentLemma);
-            pagesIdTempSet = indexRepository.findPagesIdByLemmaIdIn(currentLemmasIdSet);
-            pagesIdResultSet.retainAll(pagesIdTempSet);
-            if (pagesIdResultSet.isEmpty()) {
-                return Collections.emptySet();
-            }
-        }
-        return pagesIdResultSet;
-    }
-
-    private List<LemmaEntity> getSortedByFrequencyAscLemmasQueryList(String query, SiteEntity siteEntity) {
+    private List<LemmaEntity> getSortedByFrequencyAscLemmasQueryList(
+            String query, SiteEntity siteEntity, List<SiteEntity> siteEntityList
+    ) {
         Set<String> queryWordsSet = lemmatizerService.getLemmasCountMap(query).keySet();
-        List<LemmaEntity> lemmaEntityList;
-        if (siteEntity == null) {
-            lemmaEntityList = lemmaRepository.findLemmaEntitiesByLemmaIn(queryWordsSet);
-        } else {
-            lemmaEntityList = lemmaRepository.findLemmaEntitiesByLemmaInAndSite(queryWordsSet, siteEntity);
-        }
+        List<LemmaEntity> lemmaEntityList =
+                searchIndex.findLemmas(queryWordsSet, siteEntity == null ? siteEntityList : List.of(siteEntity));
         lemmaEntityList.sort((l1, l2) -> l1.getFrequency() < l2.getFrequency() ? -1 : 1);
         return lemmaEntityList;
     }
 
-    private void convertAbsoluteRelevanceToRelative(List<SearchResultPage> searchResultPageList) {
-        float maxRelevanceValue = searchResultPageList.get(0).getRelevance();
-        for (SearchResultPage result : searchResultPageList) {
-            result.setRelevance(result.getRelevance() / maxRelevanceValue);
+    /**
+     * Snippets are cut at the positions recorded by the indexer. Pages indexed without positions,
+     * or whose stored text no longer matches them, fall back to lemmatizing the whole text.
+     */
+    private String getSnippet(Document document, Set<String> querySet, List<byte[]> positions) {
+        String bodyText = document.body().text();
+        int[] wordPositions = mergeWordPositions(positions);
+        if (wordPositions.length > 0 && StringUtil.isAtWordStarts(bodyText, wordPositions)) {
+            return "... ".concat(StringUtil.buildSnippet(bodyText, wordPositions, properties.getSnippetBorder()))
+                    .concat(" ...");
         }
-    }
-
-    private String getSnippet(Document document, Set<String> querySet) {
-        String documentText = document.text();
-        List<String> textList = new ArrayList<>(Arrays.asList(documentText.split("\\s+")));
-        List<String> textListLemmatized = lemmatizerService.getLemmatizedList(textList);
-
-        Map<Integer, String> textMapLemmatized =
-                textListLemmatized.stream().collect(HashMap::new, (map, s) -> map.put(map.size(), s), Map::putAll);
-        Map<Integer, String> filteredTextMapLemmatized = textMapLemmatized.entrySet().stream()
-                .filter(e -> {
-                    for (String queryWord : querySet) {
-                        if (queryWord.equals(e.getValue())) {
-                            return true;
-                        }
-                    }
-                    return false;
-                }).collect(HashMap::new, (map, e) -> map.put(e.getKey(), e.getValue()), Map::putAll);
-        List<Integer> lemmasPositions = new ArrayList<>(filteredTextMapLemmatized.keySet());
-        lemmasPositions.sort(Integer::compareTo);
-
+        List<String> textList = Arrays.asList(bodyText.split("\\s+"));
+        List<Integer> lemmasPositions = lemmatizerService.findWordPositions(bodyText, querySet);
         if (lemmasPositions.isEmpty()) {
             return "";
         }
@@ -275,6 +242,23 @@ public class SearchServiceImpl implements SearchService {
         return "... ".concat(finalSnippet).concat(" ...");
     }
 
+    private int[] mergeWordPositions(List<byte[]> positions) {
+        TreeMap<Integer, Integer> offsetsByWordIndex = new TreeMap<>();
+        for (byte[] encodedPositions : positions) {
+            int[] decodedPositions = PositionCodec.decode(encodedPositions);
+            for (int i = 0; i < decodedPositions.length; i += 2) {
+                offsetsByWordIndex.putIfAbsent(decodedPositions[i], decodedPositions[i + 1]);
+            }
+        }
+        int[] wordPositions = new int[offsetsByWordIndex.size() * 2];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : offsetsByWordIndex.entrySet()) {
+            wordPositions[i++] = entry.getKey();
+            wordPositions[i++] = entry.getValue();
+        }
+        return wordPositions;
+    }
+
     private List<LemmaEntity> getFrequentLemmas(List<SiteEntity> siteEntityList, List<LemmaEntity> lemmaList) {
         Map<Integer, Float> frequentWordsBorderMap = getFrequencyLimitForEachSite(siteEntityList);
         List<LemmaEntity> frequentLemmas = new ArrayList<>();
@@ -291,7 +275,7 @@ public class SearchServiceImpl implements SearchService {
         Map<Integer, Float> frequencyMap = new HashMap<>();
         for (SiteEntity site : siteList) {
             int id = site.getId();
-            float limit = pageRepository.getPageFrequencyOccurrence(properties.getPageFrequencyLimit(), id);
+            float limit = searchIndex.getPageCount(id) * (float) properties.getPageFrequencyLimit() / 100;
             frequencyMap.put(id, limit);
         }
         return frequencyMap;
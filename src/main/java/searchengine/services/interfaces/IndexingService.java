@@ -5,7 +5,9 @@ import searchengine.dto.ApiResponse;
 
 public interface IndexingService {
 
-    ResponseEntity<ApiResponse> startIndexing();
+    ResponseEntity<ApiResponse> startIndexing(boolean incremental);
+
+    ResponseEntity<ApiResponse> resumeIndexing();
 
     ResponseEntity<ApiResponse> stopIndexing();
 
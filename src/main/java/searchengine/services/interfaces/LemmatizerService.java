@@ -1,11 +1,24 @@
 package searchengine.services.interfaces;
 
+import org.jsoup.nodes.Document;
+import searchengine.dto.indexing.LemmaCount;
+
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public interface LemmatizerService {
 
     Map<String, Integer> getLemmasCountMap(String text);
 
-    List<String> getLemmatizedList(List<String> list);
+    /**
+     * Lemma counts of the title and the body of a parsed page, gathered into one map,
+     * with the first positions of every lemma in the body text.
+     */
+    Map<String, LemmaCount> getDocumentLemmaCounts(Document document);
+
+    /**
+     * Indexes, in ascending order, of the whitespace-separated words of the text that have one of the lemmas.
+     */
+    List<Integer> findWordPositions(String text, Set<String> lemmas);
 }
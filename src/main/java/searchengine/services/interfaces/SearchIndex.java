@@ -0,0 +1,42 @@
+package searchengine.services.interfaces;
+
+import searchengine.dto.indexing.Posting;
+import searchengine.model.LemmaEntity;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates queries against the postings of the indexed sites.
+ */
+public interface SearchIndex {
+
+    /**
+     * Lemma rows of the given sites for the lemmas they contain.
+     */
+    List<LemmaEntity> findLemmas(Collection<String> lemmas, Collection<SiteEntity> sites);
+
+    /**
+     * Number of pages of the site indexed in full, duplicates are not counted.
+     */
+    int getPageCount(int siteId);
+
+    /**
+     * Pages containing every distinct lemma of the list, mapped to the sum of the ranks of those lemmas.
+     * Pages of a site that lacks one of the lemmas, or whose id is skipped, are not matched.
+     */
+    Map<Integer, Float> findPages(Collection<LemmaEntity> lemmas, Set<Integer> skippedSiteIds);
+
+    /**
+     * Called by the index writer of the site after a batch is committed: the postings of the removed pages
+     * were dropped first, then the postings of the written pages were added.
+     */
+    void apply(int siteId, Set<Integer> removedPageIds, Collection<String> removedPageLemmas,
+               Collection<PageEntity> writtenPages, Collection<Posting> postings, Map<String, Integer> lemmaIds);
+
+    void removeSite(int siteId);
+}
@@ -0,0 +1,57 @@
+package searchengine.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BloomFilterUrlSet implements VisitedUrlSet {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final LongAdder size = new LongAdder();
+
+    public BloomFilterUrlSet(long expectedUrls, double falsePositiveRate) {
+        long optimalBits = (long) Math.ceil(-expectedUrls * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) / 64));
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / Math.max(1, expectedUrls) * Math.log(2)));
+    }
+
+    @Override
+    public boolean addIfAbsent(String url) {
+        long fingerprint = VisitedUrlSet.fingerprint(url);
+        int firstHash = (int) fingerprint;
+        int secondHash = (int) (fingerprint >>> 32);
+        boolean added = false;
+        for (int i = 1; i <= hashCount; i++) {
+            long combinedHash = firstHash + (long) i * secondHash;
+            long bitIndex = Math.floorMod(combinedHash, bitCount);
+            if (setBit(bitIndex)) {
+                added = true;
+            }
+        }
+        if (added) {
+            size.increment();
+        }
+        return added;
+    }
+
+    @Override
+    public long size() {
+        return size.sum();
+    }
+
+    private boolean setBit(long bitIndex) {
+        int wordIndex = (int) (bitIndex >>> 6);
+        long mask = 1L << bitIndex;
+        long word;
+        do {
+            word = bits.get(wordIndex);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(wordIndex, word, word | mask));
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+package searchengine.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.Arrays;
+
+/**
+ * Single pass over a text that hands out its runs of Cyrillic letters lower-cased, with "ё" folded to "е",
+ * together with the index and the start offset of the whitespace-separated word they belong to.
+ */
+@UtilityClass
+public class CyrillicTokenizer {
+
+    private final int INITIAL_BUFFER_SIZE = 32;
+
+    @FunctionalInterface
+    public interface TokenHandler {
+        void accept(String token, int wordIndex, int wordOffset);
+    }
+
+    public void tokenize(CharSequence text, TokenHandler handler) {
+        char[] buffer = new char[INITIAL_BUFFER_SIZE];
+        int length = 0;
+        int wordIndex = -1;
+        int wordOffset = 0;
+        int tokenWordIndex = 0;
+        int tokenWordOffset = 0;
+        boolean isAfterWhitespace = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean isWhitespace = isWhitespace(c);
+            if (!isWhitespace && isAfterWhitespace) {
+                wordIndex++;
+                wordOffset = i;
+            }
+            isAfterWhitespace = isWhitespace;
+            char letter = toFoldedLowerCase(c);
+            if (letter != 0) {
+                if (length == 0) {
+                    tokenWordIndex = wordIndex;
+                    tokenWordOffset = wordOffset;
+                } else if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+                buffer[length++] = letter;
+            } else if (length > 0) {
+                handler.accept(new String(buffer, 0, length), tokenWordIndex, tokenWordOffset);
+                length = 0;
+            }
+        }
+        if (length > 0) {
+            handler.accept(new String(buffer, 0, length), tokenWordIndex, tokenWordOffset);
+        }
+    }
+
+    /**
+     * Same whitespace as the regex \s, so that word indexes match text.split("\\s+").
+     */
+    public boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private char toFoldedLowerCase(char c) {
+        if (c >= 'а' && c <= 'я') {
+            return c;
+        }
+        if (c >= 'А' && c <= 'Я') {
+            return (char) (c + ('а' - 'А'));
+        }
+        return c == 'ё' || c == 'Ё' ? 'е' : 0;
+    }
+}
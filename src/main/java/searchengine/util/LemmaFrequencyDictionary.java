@@ -0,0 +1,63 @@
+package searchengine.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LemmaFrequencyDictionary {
+
+    private final ConcurrentHashMap<String, LemmaCounter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Adds delta to the lemma counter and returns the dictionary's own instance of the lemma,
+     * so callers can keep it instead of their copy.
+     */
+    public String add(String lemma, int delta) {
+        LemmaCounter counter = counters.get(lemma);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(lemma, LemmaCounter::new);
+        }
+        counter.count.add(delta);
+        return counter.lemma;
+    }
+
+    public String increment(String lemma) {
+        return add(lemma, 1);
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    /**
+     * Returns how much each counter changed since the previous call, unchanged counters are left out.
+     * Exact only when no thread is updating the dictionary, and only one thread may drain it at a time.
+     */
+    public Map<String, Integer> drainDeltas() {
+        Map<String, Integer> deltas = new HashMap<>();
+        for (LemmaCounter counter : counters.values()) {
+            long count = counter.count.sum();
+            if (count != counter.drained) {
+                deltas.put(counter.lemma, (int) (count - counter.drained));
+                counter.drained = count;
+            }
+        }
+        return deltas;
+    }
+
+    private static final class LemmaCounter {
+
+        private final String lemma;
+        private final LongAdder count = new LongAdder();
+        private long drained;
+
+        private LemmaCounter(String lemma) {
+            this.lemma = lemma;
+        }
+    }
+}
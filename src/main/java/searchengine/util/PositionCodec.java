@@ -0,0 +1,63 @@
+package searchengine.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Encodes the occurrences of a lemma in a page as (word index, character offset) pairs,
+ * both delta-encoded against the previous pair and written as unsigned varints.
+ */
+@UtilityClass
+public class PositionCodec {
+
+    public byte[] encode(int[] positions, int pairCount) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(pairCount * 3);
+        int previousWordIndex = 0;
+        int previousOffset = 0;
+        for (int pair = 0; pair < pairCount; pair++) {
+            writeVarint(output, positions[2 * pair] - previousWordIndex);
+            writeVarint(output, positions[2 * pair + 1] - previousOffset);
+            previousWordIndex = positions[2 * pair];
+            previousOffset = positions[2 * pair + 1];
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Returns the pairs flattened into one array: word index at even and character offset at odd indexes.
+     */
+    public int[] decode(byte[] encoded) {
+        int[] positions = new int[8];
+        int count = 0;
+        int index = 0;
+        int[] previous = new int[2];
+        while (index < encoded.length) {
+            if (count + 2 > positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            for (int component = 0; component < 2; component++) {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = encoded[index++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                previous[component] += value;
+                positions[count++] = previous[component];
+            }
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    private void writeVarint(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+}
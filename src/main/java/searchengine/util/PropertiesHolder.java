@@ -20,6 +20,9 @@ public class PropertiesHolder {
     @Value("${file.extensions}")
     private String fileExtensions;
 
+    @Value("${url.tracking-parameters}")
+    private String trackingParameters;
+
     @Value("${selector.weight.title}")
     private float weightTitle;
 
@@ -37,4 +40,127 @@ public class PropertiesHolder {
 
     @Value("${page.frequency.limit}")
     private int pageFrequencyLimit;
+
+    @Value("${connect.timeout}")
+    private int connectTimeoutMillis;
+
+    @Value("${connect.total-timeout}")
+    private long totalTimeoutMillis;
+
+    @Value("${connect.max-body-size}")
+    private long maxBodySize;
+
+    @Value("${politeness.requests-per-second}")
+    private double requestsPerSecond;
+
+    @Value("${politeness.burst}")
+    private int requestsBurst;
+
+    @Value("${politeness.concurrency.initial}")
+    private int initialConcurrency;
+
+    @Value("${politeness.concurrency.min}")
+    private int minConcurrency;
+
+    @Value("${politeness.concurrency.max}")
+    private int maxConcurrency;
+
+    @Value("${politeness.slow-response}")
+    private long slowResponseMillis;
+
+    @Value("${frontier.bloom-filter.false-positive-rate}")
+    private double bloomFilterFalsePositiveRate;
+
+    @Value("${frontier.priority.depth-weight}")
+    private double priorityDepthWeight;
+
+    @Value("${frontier.priority.low-value-pattern}")
+    private String priorityLowValuePattern;
+
+    @Value("${frontier.priority.low-value-penalty}")
+    private double priorityLowValuePenalty;
+
+    @Value("${frontier.priority.freshness-weight}")
+    private double priorityFreshnessWeight;
+
+    @Value("${frontier.priority.freshness-window}")
+    private int priorityFreshnessWindowDays;
+
+    @Value("${frontier.seeding.enabled}")
+    private boolean seedingEnabled;
+
+    @Value("${frontier.seeding.max-sitemaps}")
+    private int maxSitemaps;
+
+    @Value("${frontier.seeding.max-urls}")
+    private int maxSitemapUrls;
+
+    @Value("${frontier.journal.directory}")
+    private String journalDirectory;
+
+    @Value("${frontier.journal.checkpoint-interval}")
+    private long journalCheckpointIntervalMillis;
+
+    @Value("${content-store.compression-level}")
+    private int contentCompressionLevel;
+
+    @Value("${index-writer.batch-size}")
+    private int indexBatchSize;
+
+    @Value("${index-writer.page-batch-size}")
+    private int indexPageBatchSize;
+
+    @Value("${index-writer.flush-interval}")
+    private long indexFlushIntervalMillis;
+
+    @Value("${index-writer.status-interval}")
+    private long siteStatusIntervalMillis;
+
+    @Value("${index-writer.max-positions}")
+    private int indexMaxPositions;
+
+    @Value("${recrawl.enabled}")
+    private boolean recrawlEnabled;
+
+    @Value("${recrawl.budget-per-site}")
+    private int recrawlBudgetPerSite;
+
+    @Value("${recrawl.revisit-interval.min}")
+    private long minRevisitIntervalMinutes;
+
+    @Value("${recrawl.revisit-interval.max}")
+    private long maxRevisitIntervalMinutes;
+
+    @Value("${recrawl.revisit-interval.initial}")
+    private long initialRevisitIntervalMinutes;
+
+    @Value("${lemmatizer.cache-size}")
+    private int lemmaCacheSize;
+
+    @Value("${dedup.enabled}")
+    private boolean dedupEnabled;
+
+    @Value("${dedup.max-distance}")
+    private int dedupMaxDistance;
+
+    @Value("${dedup.min-words}")
+    private int dedupMinWords;
+
+    @Value("${scheduler.stop-timeout}")
+    private long stopTimeoutMillis;
+
+    @Value("${pipeline.queue-capacity}")
+    private int pipelineQueueCapacity;
+
+    @Value("${pipeline.threads.fetch}")
+    private int fetchThreads;
+
+    @Value("${pipeline.threads.extract}")
+    private int extractThreads;
+
+    @Value("${pipeline.threads.lemmatize}")
+    private int lemmatizeThreads;
+
+    @Value("${pipeline.threads.persist}")
+    private int persistThreads;
 }
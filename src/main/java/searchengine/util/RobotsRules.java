@@ -0,0 +1,157 @@
+package searchengine.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+public class RobotsRules {
+
+    private static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), null, List.of());
+
+    private final List<Rule> rules;
+    private final Double crawlDelaySeconds;
+    private final List<String> sitemaps;
+
+    private RobotsRules(List<Rule> rules, Double crawlDelaySeconds, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelaySeconds = crawlDelaySeconds;
+        this.sitemaps = sitemaps;
+    }
+
+    public static RobotsRules allowAll() {
+        return ALLOW_ALL;
+    }
+
+    /**
+     * Takes the group addressed to the user agent's product token, or the "*" group when there is none.
+     */
+    public static RobotsRules parse(String robotsTxt, String userAgent) {
+        String agentToken = userAgent.split("[/\\s]", 2)[0].toLowerCase(Locale.ROOT);
+        List<String> sitemaps = new ArrayList<>();
+        Group agentGroup = null;
+        Group wildcardGroup = null;
+        Group currentGroup = null;
+        boolean isReadingAgents = false;
+
+        for (String rawLine : robotsTxt.split("\r?\n|\r")) {
+            String line = rawLine.replaceFirst("#.*", "").trim();
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (field.equals("sitemap")) {
+                sitemaps.add(value);
+                continue;
+            }
+            if (field.equals("user-agent")) {
+                if (!isReadingAgents) {
+                    currentGroup = new Group();
+                    isReadingAgents = true;
+                }
+                String agent = value.toLowerCase(Locale.ROOT);
+                if (agent.equals("*")) {
+                    wildcardGroup = wildcardGroup == null ? currentGroup : wildcardGroup;
+                } else if (!agentToken.isEmpty() && agent.contains(agentToken)) {
+                    agentGroup = agentGroup == null ? currentGroup : agentGroup;
+                }
+                continue;
+            }
+            isReadingAgents = false;
+            if (currentGroup != null) {
+                currentGroup.add(field, value);
+            }
+        }
+        Group group = agentGroup != null ? agentGroup : wildcardGroup;
+        return group == null
+                ? new RobotsRules(List.of(), null, sitemaps)
+                : new RobotsRules(group.rules, group.crawlDelaySeconds, sitemaps);
+    }
+
+    /**
+     * The longest matching rule decides, an allow rule wins a tie.
+     */
+    public boolean isAllowed(String path) {
+        Rule decidingRule = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (decidingRule == null
+                    || rule.length > decidingRule.length
+                    || rule.length == decidingRule.length && rule.isAllow)) {
+                decidingRule = rule;
+            }
+        }
+        return decidingRule == null || decidingRule.isAllow;
+    }
+
+    public Double getCrawlDelaySeconds() {
+        return crawlDelaySeconds;
+    }
+
+    public List<String> getSitemaps() {
+        return Collections.unmodifiableList(sitemaps);
+    }
+
+    private static final class Group {
+
+        private final List<Rule> rules = new ArrayList<>();
+        private Double crawlDelaySeconds;
+
+        private void add(String field, String value) {
+            switch (field) {
+                case "allow" -> addRule(value, true);
+                case "disallow" -> addRule(value, false);
+                case "crawl-delay" -> crawlDelaySeconds = parseDelay(value);
+                default -> {
+                    // other fields do not affect crawling
+                }
+            }
+        }
+
+        private void addRule(String value, boolean isAllow) {
+            if (!value.isEmpty()) {
+                rules.add(new Rule(value, isAllow));
+            }
+        }
+
+        private static Double parseDelay(String value) {
+            try {
+                double delay = Double.parseDouble(value);
+                return delay > 0 ? delay : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class Rule {
+
+        private final Pattern pattern;
+        private final int length;
+        private final boolean isAllow;
+
+        private Rule(String value, boolean isAllow) {
+            boolean isAnchored = value.endsWith("$");
+            String path = isAnchored ? value.substring(0, value.length() - 1) : value;
+            StringBuilder regex = new StringBuilder();
+            for (String part : path.split("\\*", -1)) {
+                if (!regex.isEmpty()) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(part));
+            }
+            if (isAnchored) {
+                regex.append('$');
+            }
+            this.pattern = Pattern.compile(regex.toString());
+            this.length = value.length();
+            this.isAllow = isAllow;
+        }
+
+        private boolean matches(String path) {
+            return pattern.matcher(path).lookingAt();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package searchengine.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 64-bit SimHash of a text over its two-word shingles. Texts that share most of their shingles
+ * get fingerprints that differ in few bits.
+ */
+@UtilityClass
+public class SimHash {
+
+    private final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private final long FNV_PRIME = 0x100000001b3L;
+
+    public long fingerprint(List<String> words) {
+        int[] weights = new int[Long.SIZE];
+        for (int i = 0; i < words.size(); i++) {
+            long hash = i + 1 < words.size()
+                    ? hash(words.get(i) + ' ' + words.get(i + 1))
+                    : hash(words.get(i));
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                weights[bit] += (hash >>> bit & 1) == 1 ? 1 : -1;
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    public List<String> splitWords(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean isWordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    public int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    private long hash(String feature) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < feature.length(); i++) {
+            hash ^= feature.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        // FNV leaves the high bits poorly mixed for short inputs
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
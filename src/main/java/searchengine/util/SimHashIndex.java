@@ -0,0 +1,97 @@
+package searchengine.util;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Finds fingerprints within a Hamming distance of k. The 64 bits are cut into k + 1 blocks,
+ * two fingerprints that close agree on at least one whole block, so only fingerprints
+ * sharing a block with the query are compared.
+ */
+public class SimHashIndex<T> {
+
+    private final int maxDistance;
+    private final int[] blockShifts;
+    private final long[] blockMasks;
+    private final List<Map<Long, List<Entry<T>>>> tables = new ArrayList<>();
+
+    public SimHashIndex(int maxDistance) {
+        this.maxDistance = maxDistance;
+        int blocks = maxDistance + 1;
+        blockShifts = new int[blocks];
+        blockMasks = new long[blocks];
+        int shift = 0;
+        for (int block = 0; block < blocks; block++) {
+            int bits = Long.SIZE / blocks + (block < Long.SIZE % blocks ? 1 : 0);
+            blockShifts[block] = shift;
+            blockMasks[block] = bits == Long.SIZE ? -1L : (1L << bits) - 1;
+            shift += bits;
+            tables.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Returns the value of an indexed fingerprint near this one, ignoring values the filter rejects,
+     * or indexes this fingerprint and returns null when there is none.
+     */
+    public synchronized T findOrAdd(long fingerprint, T value, Predicate<T> isIgnored) {
+        T nearValue = findNear(fingerprint, isIgnored);
+        if (nearValue != null) {
+            return nearValue;
+        }
+        add(fingerprint, value);
+        return null;
+    }
+
+    public synchronized void add(long fingerprint, T value) {
+        Entry<T> entry = new Entry<>(fingerprint, value);
+        for (int block = 0; block < tables.size(); block++) {
+            tables.get(block).computeIfAbsent(blockKey(fingerprint, block), key -> new ArrayList<>(1)).add(entry);
+        }
+    }
+
+    public synchronized void remove(long fingerprint, Predicate<T> isRemoved) {
+        for (int block = 0; block < tables.size(); block++) {
+            long key = blockKey(fingerprint, block);
+            List<Entry<T>> entries = tables.get(block).get(key);
+            if (entries == null) {
+                continue;
+            }
+            entries.removeIf(entry -> entry.fingerprint == fingerprint && isRemoved.test(entry.value));
+            if (entries.isEmpty()) {
+                tables.get(block).remove(key);
+            }
+        }
+    }
+
+    private T findNear(long fingerprint, Predicate<T> isIgnored) {
+        for (int block = 0; block < tables.size(); block++) {
+            List<Entry<T>> candidates = tables.get(block).get(blockKey(fingerprint, block));
+            if (candidates == null) {
+                continue;
+            }
+            for (Entry<T> candidate : candidates) {
+                if (SimHash.distance(candidate.fingerprint, fingerprint) <= maxDistance
+                        && !isIgnored.test(candidate.value)) {
+                    return candidate.value;
+                }
+            }
+        }
+        return null;
+    }
+
+    private long blockKey(long fingerprint, int block) {
+        return fingerprint >>> blockShifts[block] & blockMasks[block];
+    }
+
+    private static final class Entry<T> {
+
+        private final long fingerprint;
+        private final T value;
+
+        private Entry(long fingerprint, T value) {
+            this.fingerprint = fingerprint;
+            this.value = value;
+        }
+    }
+}
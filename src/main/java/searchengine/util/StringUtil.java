@@ -1,44 +1,42 @@
 package searchengine.util;
 
 import lombok.experimental.UtilityClass;
-import org.jsoup.nodes.Element;
 import searchengine.exceptions.SiteException;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 
 @UtilityClass
 public class StringUtil {
 
     private final String SLASH = "/";
-    private final StringBuilder BUILDER = new StringBuilder();
 
     public String cutSlash(String siteNameWithSlash) {
         return siteNameWithSlash.substring(0, siteNameWithSlash.length() - 1);
     }
 
     public String getStartPage(String path) {
-        URL url;
-        try {
-            url = new URL(path);
-        } catch (MalformedURLException e) {
-            throw new SiteException("Site url is wrong");
-        }
-        String domain = url.getHost();
-        domain = domain.startsWith("www.") ? domain.substring(4) : domain;
-        return url.getProtocol() + "://" + domain + SLASH;
+        URL url = getUrl(path);
+        return url.getProtocol() + "://" + getDomain(url) + SLASH;
     }
 
-    public String cutProtocolAndHost(String pagePath, String homePage) {
-        String path = pagePath.substring(homePage.length());
-        if (path.contains(".")) {
-            path = path.substring(0, path.length() - 1);
-        }
-        path = path.startsWith(SLASH) ? path : SLASH + path;
+    public String getHost(String path) {
+        return getDomain(getUrl(path));
+    }
+
+    /**
+     * Path and query of a canonical page url, starting with a slash.
+     */
+    public String cutProtocolAndHost(String pageUrl, String homePage) {
+        String path = pageUrl.substring(homePage.length() - 1);
         if (path.length() > 765) {
             throw new SiteException("Path too looooooong (length is " + path.length() + ")");
         }
@@ -46,7 +44,7 @@ public class StringUtil {
     }
 
     public String buildSnippet(List<String> textList, List<Integer> lemmasPositions, int snippetBorder) {
-        BUILDER.setLength(0);
+        StringBuilder snippet = new StringBuilder();
         int start = 0;
         int end = -1;
 
@@ -57,7 +55,7 @@ public class StringUtil {
                 end = entry.getValue();
                 continue;
             }
-            buildString(textList, lemmasPositions, start, end);
+            buildString(snippet, textList, lemmasPositions, start, end);
             start = entry.getKey();
             if (start < 0) {
                 start = 0;
@@ -67,26 +65,64 @@ public class StringUtil {
                 end = textList.size() - 1;
             }
             if (isLastEntry(entry, lemmasPositions, snippetBorder)) {
-                buildString(textList, lemmasPositions, start, end);
+                buildString(snippet, textList, lemmasPositions, start, end);
             }
         }
-        if (BUILDER.toString().isEmpty()) {
+        if (snippet.isEmpty()) {
             end = textList.size() - 1;
-            buildString(textList, lemmasPositions, start, end);
+            buildString(snippet, textList, lemmasPositions, start, end);
         }
-        return BUILDER.toString();
+        return snippet.toString();
     }
 
-    public boolean isStringExists(String s) {
-        return !(s == null || s.matches("\\s+") || s.isEmpty());
+    /**
+     * Builds the longest snippet around the given words of a whitespace-normalized text, using the
+     * (word index, character offset) pairs recorded at index time, so that only the snippet's neighbourhood is read.
+     */
+    public String buildSnippet(String text, int[] wordPositions, int snippetBorder) {
+        String bestFragment = "";
+        int pairCount = wordPositions.length / 2;
+        int first = 0;
+        while (first < pairCount) {
+            int last = first;
+            while (last + 1 < pairCount
+                    && wordPositions[2 * last + 2] - snippetBorder <= wordPositions[2 * last] + snippetBorder) {
+                last++;
+            }
+            String fragment = buildFragment(text, wordPositions, first, last, snippetBorder);
+            if (fragment.length() > bestFragment.length()) {
+                bestFragment = fragment;
+            }
+            first = last + 1;
+        }
+        return bestFragment;
     }
 
-    public String getPathToSave(String pageUrl, String startPage) {
-        int start = startPage.length();
-        String pathToSave = pageUrl.replace("www.", "");
-        pathToSave = SLASH + pathToSave.substring(start);
-        pathToSave = pathToSave.endsWith(SLASH) || pathToSave.contains(".") ? pathToSave : pathToSave + SLASH;
-        return pathToSave;
+    /**
+     * True when every recorded offset still points at the start of a word, i.e. the text is the one that was indexed.
+     */
+    public boolean isAtWordStarts(String text, int[] wordPositions) {
+        for (int i = 1; i < wordPositions.length; i += 2) {
+            int offset = wordPositions[i];
+            if (offset >= text.length() || CyrillicTokenizer.isWhitespace(text.charAt(offset))
+                    || offset > 0 && !CyrillicTokenizer.isWhitespace(text.charAt(offset - 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getContentHash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    public boolean isStringExists(String s) {
+        return !(s == null || s.matches("\\s+") || s.isEmpty());
     }
 
     public boolean isHrefValid(String homePage, String href, String fileExtensions) {
@@ -96,37 +132,96 @@ public class StringUtil {
                 && !href.equals(homePage + SLASH);
     }
 
-    public boolean isPageAdded(Set<String> webpages, String href) {
-        href += href.endsWith(SLASH) ? "" : SLASH;
-        return webpages.contains(href);
+    public int getPathDepth(String path) {
+        int depth = 0;
+        for (String segment : path.split(SLASH)) {
+            if (!segment.isEmpty()) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    private boolean isHrefToPage(String href, String fileExtensions) {
+        int queryStart = href.indexOf('?');
+        String hrefPath = queryStart < 0 ? href : href.substring(0, queryStart);
+        return !hrefPath.matches(".*\\.(" + fileExtensions + ")/?");
+    }
+
+    private URL getUrl(String path) {
+        try {
+            return new URL(path);
+        } catch (MalformedURLException e) {
+            throw new SiteException("Site url is wrong");
+        }
     }
 
-    public String getHrefFromAnchor(Element anchor) {
-        String href = anchor.absUrl("href").trim().replace("\u00A0", "");
-        href = href.endsWith(SLASH) ? href : href + SLASH;
-        return href.replace("//www.", "//");
+    private String getDomain(URL url) {
+        String domain = url.getHost().toLowerCase(Locale.ROOT);
+        return domain.startsWith("www.") ? domain.substring(4) : domain;
     }
 
-    private boolean isHrefToPage(String href, String fileExtensions) {
-        if (href.matches(".*([#?\"@\\\\]).*")) {
-            return false;
+    private String buildFragment(String text, int[] wordPositions, int first, int last, int snippetBorder) {
+        int start = wordPositions[2 * first + 1];
+        for (int i = 0; i < snippetBorder && start > 0; i++) {
+            start = getPreviousWordStart(text, start);
+        }
+        int end = getWordEnd(text, wordPositions[2 * last + 1]);
+        for (int i = 0; i < snippetBorder && end < text.length(); i++) {
+            end = getWordEnd(text, getNextWordStart(text, end));
+        }
+        StringBuilder fragment = new StringBuilder(end - start + 16 * (last - first + 1));
+        int copied = start;
+        for (int pair = first; pair <= last; pair++) {
+            int wordStart = wordPositions[2 * pair + 1];
+            int wordEnd = getWordEnd(text, wordStart);
+            fragment.append(text, copied, wordStart).append("<b>").append(text, wordStart, wordEnd).append("</b>");
+            copied = wordEnd;
+        }
+        return fragment.append(text, copied, end).toString();
+    }
+
+    private int getPreviousWordStart(String text, int wordStart) {
+        int i = wordStart;
+        while (i > 0 && CyrillicTokenizer.isWhitespace(text.charAt(i - 1))) {
+            i--;
+        }
+        while (i > 0 && !CyrillicTokenizer.isWhitespace(text.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    private int getNextWordStart(String text, int wordEnd) {
+        int i = wordEnd;
+        while (i < text.length() && CyrillicTokenizer.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private int getWordEnd(String text, int wordStart) {
+        int i = wordStart;
+        while (i < text.length() && !CyrillicTokenizer.isWhitespace(text.charAt(i))) {
+            i++;
         }
-        return !href.matches(".*\\.(" + fileExtensions + ")/?");
+        return i;
     }
 
     private boolean isLastEntry(Map.Entry<Integer, Integer> entry, List<Integer> lemmasPositions, int snippetBorder) {
         return (entry.getValue() - snippetBorder) == lemmasPositions.get(lemmasPositions.size() - 1);
     }
 
-    private void buildString(List<String> textList, List<Integer> lemmasPositions, int start, int end) {
+    private void buildString(StringBuilder snippet, List<String> textList, List<Integer> lemmasPositions,
+                             int start, int end) {
         for (int i = start; i <= end; i++) {
             if (lemmasPositions.contains(i)) {
-                BUILDER.append("<b>").append(textList.get(i)).append("</b>").append(" ");
+                snippet.append("<b>").append(textList.get(i)).append("</b>").append(" ");
             } else {
-                BUILDER.append(textList.get(i)).append(" ");
+                snippet.append(textList.get(i)).append(" ");
             }
             if (i == end) {
-                BUILDER.deleteCharAt(BUILDER.length() - 1).append("&emsp;&emsp;");
+                snippet.deleteCharAt(snippet.length() - 1).append("&emsp;&emsp;");
             }
         }
     }
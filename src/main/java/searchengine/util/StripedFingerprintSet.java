@@ -0,0 +1,76 @@
+package searchengine.util;
+
+public class StripedFingerprintSet implements VisitedUrlSet {
+
+    private static final int STRIPES = 64;
+    private static final int INITIAL_STRIPE_CAPACITY = 256;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public StripedFingerprintSet() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public boolean addIfAbsent(String url) {
+        long fingerprint = VisitedUrlSet.fingerprint(url);
+        fingerprint = fingerprint == 0 ? 1 : fingerprint;
+        return stripes[(int) (fingerprint >>> 58)].add(fingerprint);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private static final class Stripe {
+
+        private long[] table = new long[INITIAL_STRIPE_CAPACITY];
+        private int size;
+
+        synchronized boolean add(long fingerprint) {
+            if (size + 1 > table.length * LOAD_FACTOR) {
+                resize();
+            }
+            if (!insert(table, fingerprint)) {
+                return false;
+            }
+            size++;
+            return true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void resize() {
+            long[] newTable = new long[table.length * 2];
+            for (long fingerprint : table) {
+                if (fingerprint != 0) {
+                    insert(newTable, fingerprint);
+                }
+            }
+            table = newTable;
+        }
+
+        private static boolean insert(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            int index = (int) fingerprint & mask;
+            while (table[index] != 0) {
+                if (table[index] == fingerprint) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+            table[index] = fingerprint;
+            return true;
+        }
+    }
+}
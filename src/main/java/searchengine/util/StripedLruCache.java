@@ -0,0 +1,83 @@
+package searchengine.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded cache split into independently locked stripes, each evicting its least recently used entry.
+ * A missing value is computed outside the lock, so two threads may compute the same value once each.
+ */
+public class StripedLruCache<K, V> {
+
+    private static final int STRIPES = 32;
+
+    private final Stripe<K, V>[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public StripedLruCache(int maxSize) {
+        stripes = new Stripe[STRIPES];
+        int stripeCapacity = Math.max(1, maxSize / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe<>(stripeCapacity);
+        }
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        Stripe<K, V> stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        V value = stripe.get(key);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = loader.apply(key);
+        stripe.put(key, value);
+        return value;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long size() {
+        long size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private static final class Stripe<K, V> {
+
+        private final LinkedHashMap<K, V> entries;
+
+        private Stripe(int capacity) {
+            entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized V get(K key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(K key, V value) {
+            entries.put(key, value);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package searchengine.util;
+
+public interface VisitedUrlSet {
+
+    boolean addIfAbsent(String url);
+
+    long size();
+
+    static long fingerprint(CharSequence url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
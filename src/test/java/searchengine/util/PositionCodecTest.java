@@ -0,0 +1,48 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionCodecTest {
+
+    @Test
+    void roundTripsZeroPositions() {
+        int[] positions = {0, 0};
+        byte[] encoded = PositionCodec.encode(positions, 1);
+        assertArrayEquals(new byte[]{0, 0}, encoded);
+        assertArrayEquals(positions, PositionCodec.decode(encoded));
+    }
+
+    @Test
+    void roundTripsAtSingleByteBoundary() {
+        int[] positions = {127, 128, 255, 256};
+        byte[] encoded = PositionCodec.encode(positions, 2);
+        // deltas 127, 128, 128, 128: one byte up to 127, two bytes from 128
+        assertEquals(1 + 2 + 2 + 2, encoded.length);
+        assertArrayEquals(positions, PositionCodec.decode(encoded));
+    }
+
+    @Test
+    void roundTripsLargeGaps() {
+        int[] positions = {3, 17, 70_000, 1_000_000, 70_001, Integer.MAX_VALUE};
+        assertArrayEquals(positions, PositionCodec.decode(PositionCodec.encode(positions, 3)));
+    }
+
+    @Test
+    void encodesOnlyGivenPairCount() {
+        int[] positions = {1, 2, 5, 9, 0, 0, 0, 0};
+        assertArrayEquals(new int[]{1, 2, 5, 9}, PositionCodec.decode(PositionCodec.encode(positions, 2)));
+        assertArrayEquals(new int[0], PositionCodec.decode(PositionCodec.encode(positions, 0)));
+    }
+
+    @Test
+    void roundTripsManyPairs() {
+        int[] positions = new int[2000];
+        for (int pair = 0; pair < 1000; pair++) {
+            positions[2 * pair] = pair * 3;
+            positions[2 * pair + 1] = pair * 200;
+        }
+        assertArrayEquals(positions, PositionCodec.decode(PositionCodec.encode(positions, 1000)));
+    }
+}
@@ -0,0 +1,102 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RobotsRulesTest {
+
+    private static final String USER_AGENT = "SearchEngineBot/1.0 (+https://example.com/bot)";
+
+    @Test
+    void takesGroupOfUserAgent() {
+        String robotsTxt = """
+                User-agent: *
+                Disallow: /
+
+                User-agent: OtherBot
+                User-agent: searchenginebot
+                Disallow: /private/
+                """;
+        RobotsRules rules = RobotsRules.parse(robotsTxt, USER_AGENT);
+        assertTrue(rules.isAllowed("/news/"));
+        assertFalse(rules.isAllowed("/private/report.html"));
+    }
+
+    @Test
+    void takesWildcardGroupWithoutUserAgentGroup() {
+        String robotsTxt = """
+                User-agent: OtherBot
+                Disallow: /
+
+                User-agent: *
+                Disallow: /admin # comment
+                """;
+        RobotsRules rules = RobotsRules.parse(robotsTxt, USER_AGENT);
+        assertTrue(rules.isAllowed("/"));
+        assertFalse(rules.isAllowed("/admin/users"));
+        assertTrue(RobotsRules.parse("User-agent: OtherBot\nDisallow: /\n", USER_AGENT).isAllowed("/"));
+    }
+
+    @Test
+    void longestMatchDecides() {
+        String robotsTxt = """
+                User-agent: *
+                Disallow: /catalog/
+                Allow: /catalog/public/
+                Disallow: /catalog/public/drafts/
+                Allow: /page
+                Disallow: /page
+                Disallow:
+                """;
+        RobotsRules rules = RobotsRules.parse(robotsTxt, USER_AGENT);
+        assertFalse(rules.isAllowed("/catalog/items/"));
+        assertTrue(rules.isAllowed("/catalog/public/item.html"));
+        assertFalse(rules.isAllowed("/catalog/public/drafts/1/"));
+        assertTrue(rules.isAllowed("/page/"));
+        assertTrue(rules.isAllowed("/about/"));
+    }
+
+    @Test
+    void matchesWildcards() {
+        String robotsTxt = """
+                User-agent: *
+                Disallow: /*.pdf$
+                Disallow: /*?sort=
+                Disallow: /tmp$
+                """;
+        RobotsRules rules = RobotsRules.parse(robotsTxt, USER_AGENT);
+        assertFalse(rules.isAllowed("/docs/report.pdf"));
+        assertTrue(rules.isAllowed("/docs/report.pdf?download=1"));
+        assertFalse(rules.isAllowed("/catalog/?sort=price"));
+        assertTrue(rules.isAllowed("/catalog/?page=2"));
+        assertFalse(rules.isAllowed("/tmp"));
+        assertTrue(rules.isAllowed("/tmp/"));
+    }
+
+    @Test
+    void readsCrawlDelayAndSitemaps() {
+        String robotsTxt = """
+                Sitemap: https://example.com/sitemap.xml
+                User-agent: *
+                Crawl-delay: 2.5
+
+                User-agent: SearchEngineBot
+                Crawl-delay: 10
+                """;
+        RobotsRules rules = RobotsRules.parse(robotsTxt, USER_AGENT);
+        assertEquals(10.0, rules.getCrawlDelaySeconds());
+        assertEquals(List.of("https://example.com/sitemap.xml"), rules.getSitemaps());
+        assertEquals(2.5, RobotsRules.parse(robotsTxt, "OtherBot").getCrawlDelaySeconds());
+        assertNull(RobotsRules.parse("User-agent: *\nCrawl-delay: soon\n", USER_AGENT).getCrawlDelaySeconds());
+        assertNull(RobotsRules.parse("User-agent: *\nCrawl-delay: 0\n", USER_AGENT).getCrawlDelaySeconds());
+    }
+
+    @Test
+    void allowAll() {
+        assertTrue(RobotsRules.allowAll().isAllowed("/anything/"));
+        assertNull(RobotsRules.allowAll().getCrawlDelaySeconds());
+    }
+}
@@ -0,0 +1,66 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimHashIndexTest {
+
+    private static final long FINGERPRINT = 0x9E3779B97F4A7C15L;
+
+    @Test
+    void findsFingerprintAtMaxDistance() {
+        // 3 + 1 blocks of 16 bits, one flipped bit in three of them still leaves one block equal
+        SimHashIndex<String> index = new SimHashIndex<>(3);
+        index.add(FINGERPRINT, "canonical");
+        assertEquals("canonical", index.findOrAdd(flip(FINGERPRINT, 0, 17, 40), "near", value -> false));
+        assertEquals("canonical", index.findOrAdd(flip(FINGERPRINT, 15, 16, 63), "near", value -> false));
+    }
+
+    @Test
+    void addsFingerprintBeyondMaxDistance() {
+        SimHashIndex<String> index = new SimHashIndex<>(3);
+        index.add(FINGERPRINT, "canonical");
+        long farFingerprint = flip(FINGERPRINT, 1, 2, 3, 4);
+        assertNull(index.findOrAdd(farFingerprint, "far", value -> false));
+        assertEquals("far", index.findOrAdd(flip(farFingerprint, 63), "near far", value -> false));
+        // every block differs, so the candidate is never compared
+        assertNull(index.findOrAdd(flip(FINGERPRINT, 5, 21, 37, 53), "other", value -> false));
+    }
+
+    @Test
+    void splitsBlocksUnevenly() {
+        // 5 + 1 blocks of 11, 11, 11, 11, 10 and 10 bits: five flips leave a block equal, six may leave none
+        SimHashIndex<String> index = new SimHashIndex<>(5);
+        index.add(FINGERPRINT, "canonical");
+        assertEquals("canonical", index.findOrAdd(flip(FINGERPRINT, 10, 11, 21, 22, 33), "near", value -> false));
+        assertNull(index.findOrAdd(flip(FINGERPRINT, 0, 11, 22, 33, 44, 54), "far", value -> false));
+    }
+
+    @Test
+    void skipsIgnoredValues() {
+        SimHashIndex<String> index = new SimHashIndex<>(3);
+        index.add(FINGERPRINT, "own");
+        assertNull(index.findOrAdd(flip(FINGERPRINT, 7), "new", "own"::equals));
+        assertEquals("new", index.findOrAdd(FINGERPRINT, "another", "own"::equals));
+    }
+
+    @Test
+    void remove() {
+        SimHashIndex<String> index = new SimHashIndex<>(3);
+        index.add(FINGERPRINT, "first");
+        index.add(FINGERPRINT, "second");
+        index.remove(FINGERPRINT, "first"::equals);
+        index.remove(flip(FINGERPRINT, 1), value -> true);
+        assertEquals("second", index.findOrAdd(FINGERPRINT, "third", value -> false));
+        index.remove(FINGERPRINT, "second"::equals);
+        assertNull(index.findOrAdd(FINGERPRINT, "third", value -> false));
+    }
+
+    private long flip(long fingerprint, int... bits) {
+        for (int bit : bits) {
+            fingerprint ^= 1L << bit;
+        }
+        return fingerprint;
+    }
+}
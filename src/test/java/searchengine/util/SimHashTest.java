@@ -0,0 +1,59 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimHashTest {
+
+    // dedup.max-distance in application.yaml
+    private static final int MAX_DISTANCE = 6;
+
+    @Test
+    void splitWords() {
+        assertEquals(List.of("привет", "мир", "2024", "hello"),
+                SimHash.splitWords(" Привет, мир! 2024 -- HELLO"));
+        assertEquals(List.of(), SimHash.splitWords(" ,.! "));
+    }
+
+    @Test
+    void nearDuplicateTextsAreWithinDistance() {
+        List<String> words = randomWords(new Random(1), 400);
+        long fingerprint = SimHash.fingerprint(words);
+
+        List<String> editedWords = new ArrayList<>(words);
+        editedWords.set(200, "изменено");
+        editedWords.add("подвал");
+        assertTrue(SimHash.distance(fingerprint, SimHash.fingerprint(editedWords)) <= MAX_DISTANCE);
+        assertEquals(fingerprint, SimHash.fingerprint(SimHash.splitWords(String.join(" ", words).toUpperCase())));
+    }
+
+    @Test
+    void unrelatedTextsAreBeyondDistance() {
+        Random random = new Random(2);
+        for (int i = 0; i < 20; i++) {
+            long first = SimHash.fingerprint(randomWords(random, 400));
+            long second = SimHash.fingerprint(randomWords(random, 400));
+            assertTrue(SimHash.distance(first, second) > MAX_DISTANCE);
+        }
+    }
+
+    @Test
+    void distance() {
+        assertEquals(0, SimHash.distance(0x5L, 0x5L));
+        assertEquals(64, SimHash.distance(0L, -1L));
+        assertEquals(2, SimHash.distance(1L, 1L << 63 | 1L << 1 | 1L));
+    }
+
+    private List<String> randomWords(Random random, int count) {
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            words.add("слово" + random.nextInt(5000));
+        }
+        return words;
+    }
+}
@@ -0,0 +1,51 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringUtilTest {
+
+    // words 0 to 4 start at offsets 0, 6, 11, 17 and 23
+    private static final String TEXT = "alpha beta gamma delta epsilon";
+
+    @Test
+    void buildSnippetAtTextStart() {
+        assertEquals("<b>alpha</b> beta gamma", StringUtil.buildSnippet(TEXT, new int[]{0, 0}, 2));
+    }
+
+    @Test
+    void buildSnippetAtTextEnd() {
+        assertEquals("gamma delta <b>epsilon</b>", StringUtil.buildSnippet(TEXT, new int[]{4, 23}, 2));
+    }
+
+    @Test
+    void buildSnippetMergesCloseWords() {
+        assertEquals("alpha <b>beta</b> gamma <b>delta</b> epsilon",
+                StringUtil.buildSnippet(TEXT, new int[]{1, 6, 3, 17}, 1));
+    }
+
+    @Test
+    void buildSnippetKeepsLongestFragment() {
+        assertEquals("delta <b>epsilon</b>", StringUtil.buildSnippet(TEXT, new int[]{0, 0, 4, 23}, 1));
+    }
+
+    @Test
+    void isAtWordStarts() {
+        assertTrue(StringUtil.isAtWordStarts(TEXT, new int[]{0, 0, 4, 23}));
+        assertFalse(StringUtil.isAtWordStarts(TEXT, new int[]{4, 30}));
+        assertFalse(StringUtil.isAtWordStarts(TEXT, new int[]{2, 12}));
+        assertFalse(StringUtil.isAtWordStarts(TEXT, new int[]{1, 5}));
+        assertFalse(StringUtil.isAtWordStarts("alpha beta", new int[]{0, 0, 4, 23}));
+    }
+
+    @Test
+    void buildSnippetFromWordListDoesNotKeepPreviousSnippet() {
+        List<String> words = List.of(TEXT.split(" "));
+        String snippet = StringUtil.buildSnippet(words, List.of(2), 1);
+        assertEquals("beta <b>gamma</b> delta&emsp;&emsp;", snippet);
+        assertEquals(snippet, StringUtil.buildSnippet(words, List.of(2), 1));
+    }
+}
@@ -0,0 +1,44 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedFingerprintSetTest {
+
+    @Test
+    void addIfAbsent() {
+        VisitedUrlSet visitedUrls = new StripedFingerprintSet();
+        assertTrue(visitedUrls.addIfAbsent("https://example.com/"));
+        assertTrue(visitedUrls.addIfAbsent("https://example.com/news/"));
+        assertFalse(visitedUrls.addIfAbsent("https://example.com/"));
+        assertEquals(2, visitedUrls.size());
+    }
+
+    @Test
+    void addIfAbsentConcurrently() throws InterruptedException {
+        VisitedUrlSet visitedUrls = new StripedFingerprintSet();
+        AtomicInteger addedCount = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    if (visitedUrls.addIfAbsent("https://example.com/page/" + i + "/")) {
+                        addedCount.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(20_000, addedCount.get());
+        assertEquals(20_000, visitedUrls.size());
+    }
+}